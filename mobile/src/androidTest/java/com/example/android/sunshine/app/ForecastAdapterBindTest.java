@@ -0,0 +1,122 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+/**
+ * Counts what binding a forecast row allocates, with the rows formatted on the loader thread
+ * ({@link ForecastCursor}) and with a plain cursor, which {@link ForecastAdapter} formats at
+ * bind time like every bind used to.
+ */
+public class ForecastAdapterBindTest extends InstrumentationTestCase {
+
+    private static final String LOG_TAG = ForecastAdapterBindTest.class.getSimpleName();
+
+    private static final int DAYS = 14;
+    // Every row but the first, over and over, like a fling through the list
+    private static final int ROUNDS = 100;
+    private static final long TODAY = 1462000000000L;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private Context mContext;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = new ContextThemeWrapper(getInstrumentation().getTargetContext(),
+                R.style.AppTheme);
+    }
+
+    public void testBindAllocations() throws Throwable {
+        final long[][] results = new long[2][];
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                results[0] = bindAllocations(createCursor());
+                results[1] = bindAllocations(createForecastCursor());
+            }
+        });
+        long[] atBind = results[0];
+        long[] preformatted = results[1];
+        Log.i(LOG_TAG, "Per bind: formatted at bind time " + atBind[0] + " objects, "
+                + atBind[1] + " bytes; formatted by the loader " + preformatted[0]
+                + " objects, " + preformatted[1] + " bytes");
+        assertTrue(preformatted[0] + " objects per bind, formatting at bind time "
+                + atBind[0], preformatted[0] < atBind[0]);
+    }
+
+    /**
+     * @return objects and bytes allocated per bind
+     */
+    @SuppressWarnings("deprecation")
+    private long[] bindAllocations(Cursor cursor) {
+        ForecastAdapter adapter = new ForecastAdapter(mContext,
+                new ForecastAdapter.ForecastAdapterOnClickHandler() {
+                    @Override
+                    public void onClick(Long date, ForecastAdapter.ForecastAdapterViewHolder vh) {
+                    }
+                }, new View(mContext), AbsListView.CHOICE_MODE_NONE);
+        adapter.swapCursor(cursor);
+        RecyclerView recyclerView = new RecyclerView(mContext);
+        ForecastAdapter.ForecastAdapterViewHolder holder =
+                adapter.onCreateViewHolder(recyclerView, adapter.getItemViewType(1));
+
+        // Once first, so class loading and the resource caches aren't counted
+        bindAll(adapter, holder);
+
+        Debug.resetThreadAllocSize();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                bindAll(adapter, holder);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        int binds = ROUNDS * (DAYS - 1);
+        return new long[] {Debug.getThreadAllocCount() / binds,
+                Debug.getThreadAllocSize() / binds};
+    }
+
+    private static void bindAll(ForecastAdapter adapter,
+                                ForecastAdapter.ForecastAdapterViewHolder holder) {
+        for (int position = 1; position < DAYS; position++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+    }
+
+    private static MatrixCursor createCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[] {"_id", "date", "short_desc", "max",
+                "min", "location_setting", "weather_id", "coord_lat", "coord_long"});
+        for (int i = 0; i < DAYS; i++) {
+            cursor.addRow(new Object[] {i + 1, TODAY + i * DAY, "Clear", 20.5 + i, 10.25 + i,
+                    "94043", 800 + i % 5, 37.39, -122.08});
+        }
+        return cursor;
+    }
+
+    /**
+     * What {@link ForecastLoader} hands the adapter.
+     */
+    private ForecastCursor createForecastCursor() {
+        Cursor cursor = createCursor();
+        ForecastRow[] rows = ForecastRow.createAll(mContext, SunshineSettings.get(mContext),
+                cursor);
+        long[] dates = new long[rows.length];
+        int[] hashes = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            dates[i] = rows[i].date;
+            hashes[i] = i;
+        }
+        return new ForecastCursor(cursor, rows, dates, hashes, null, null);
+    }
+}
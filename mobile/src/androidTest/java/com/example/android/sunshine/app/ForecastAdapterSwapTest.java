@@ -0,0 +1,191 @@
+package com.example.android.sunshine.app;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * Swaps cursors loaded by {@link ForecastLoader} into a laid out forecast list, and checks that
+ * only the rows that changed are bound again: none, one and all of them.  Logs how long the
+ * swap and the layout pass that follows take, against a plain cursor that rebinds everything.
+ */
+public class ForecastAdapterSwapTest extends InstrumentationTestCase {
+
+    private static final String LOG_TAG = ForecastAdapterSwapTest.class.getSimpleName();
+
+    private static final int DAYS = 14;
+    private static final long TODAY = 1462000000000L;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final int WIDTH = 1080;
+    // Tall enough for every row to be laid out, so each one that changed is bound
+    private static final int HEIGHT = 20000;
+
+    private Context mContext;
+    private ForecastProvider mProvider;
+    private ForecastLoader mLoader;
+    private ForecastAdapter mAdapter;
+    private RecyclerView mRecyclerView;
+    // only used on the main thread
+    private int mBinds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Context targetContext = getInstrumentation().getTargetContext();
+        mContext = new ContextThemeWrapper(targetContext, R.style.AppTheme);
+        mProvider = new ForecastProvider(targetContext);
+        final Context loaderContext = new LoaderContext(targetContext, mProvider);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // The loader makes its content observer's handler, it needs a looper
+                mLoader = new ForecastLoader(loaderContext,
+                        WeatherContract.WeatherEntry.CONTENT_URI, null, null, null, null);
+                mAdapter = new ForecastAdapter(mContext,
+                        new ForecastAdapter.ForecastAdapterOnClickHandler() {
+                            @Override
+                            public void onClick(Long date,
+                                                ForecastAdapter.ForecastAdapterViewHolder vh) {
+                            }
+                        }, new View(mContext), AbsListView.CHOICE_MODE_NONE) {
+                    @Override
+                    public void onBindViewHolder(ForecastAdapterViewHolder holder, int position) {
+                        mBinds++;
+                        super.onBindViewHolder(holder, position);
+                    }
+                };
+                mRecyclerView = new RecyclerView(mContext);
+                mRecyclerView.setLayoutManager(new LinearLayoutManager(mContext));
+                // A changed row is bound again in place, rather than into a second holder for
+                // the change animation
+                mRecyclerView.setItemAnimator(null);
+                mRecyclerView.setAdapter(mAdapter);
+            }
+        });
+    }
+
+    public void testRebindsOnlyChangedRows() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mProvider.setForecast(0, 0);
+                assertEquals(DAYS, swapAndLayout(mLoader.loadInBackground(), "First load"));
+
+                mProvider.setForecast(0, 0);
+                assertSwap(0, "Nothing changed");
+                mProvider.setForecast(1, 0);
+                assertSwap(1, "One row changed");
+                mProvider.setForecast(DAYS, 1);
+                assertSwap(DAYS, "Every row changed");
+
+                // The same rows again, as a cursor that doesn't know what changed
+                Cursor plain = mProvider.query(WeatherContract.WeatherEntry.CONTENT_URI, null,
+                        null, null, null);
+                assertEquals(DAYS, swapAndLayout(plain, "Plain cursor, nothing changed"));
+            }
+        });
+    }
+
+    /**
+     * Loads what the provider has now and checks the swap binds the rows the loader says.
+     */
+    private void assertSwap(int changedRows, String description) {
+        Cursor cursor = mLoader.loadInBackground();
+        assertTrue(cursor instanceof ForecastCursor);
+        ForecastCursor forecastCursor = (ForecastCursor) cursor;
+        assertTrue(forecastCursor.isDiffedAgainst(mAdapter.getCursor()));
+        assertEquals(changedRows, forecastCursor.getUpdateCount());
+        assertEquals(description, changedRows, swapAndLayout(cursor, description));
+    }
+
+    /**
+     * @return how many rows were bound by the swap and the layout pass after it
+     */
+    private int swapAndLayout(Cursor cursor, String description) {
+        mBinds = 0;
+        long start = System.nanoTime();
+        mAdapter.swapCursor(cursor);
+        mRecyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mRecyclerView.layout(0, 0, WIDTH, HEIGHT);
+        long micros = (System.nanoTime() - start) / 1000;
+        Log.i(LOG_TAG, description + ": " + mBinds + " of " + cursor.getCount()
+                + " rows bound, swap and layout " + micros + "us");
+        assertEquals(DAYS, mRecyclerView.getChildCount());
+        return mBinds;
+    }
+
+    /**
+     * Answers every query with the forecast last set, with the columns of
+     * {@link ForecastFragment}.
+     */
+    private static class ForecastProvider extends MockContentProvider {
+        private int mChangedRows;
+        private int mShift;
+
+        ForecastProvider(Context context) {
+            super(context);
+        }
+
+        /**
+         * @param changedRows how many rows, from the first, differ from the base forecast
+         * @param shift       added to the temperatures of those rows
+         */
+        void setForecast(int changedRows, int shift) {
+            mChangedRows = changedRows;
+            mShift = shift;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                            String[] selectionArgs, String sortOrder) {
+            MatrixCursor cursor = new MatrixCursor(new String[] {"_id", "date", "short_desc",
+                    "max", "min", "location_setting", "weather_id", "coord_lat", "coord_long"});
+            for (int i = 0; i < DAYS; i++) {
+                // Without a shift, the changed rows get another condition instead
+                int weatherId = i < mChangedRows && mShift == 0 ? 500 : 800 + i % 5;
+                double shift = i < mChangedRows ? mShift : 0;
+                cursor.addRow(new Object[] {i + 1, TODAY + i * DAY, "Clear", 20.5 + i + shift,
+                        10.25 + i + shift, "94043", weatherId, 37.39, -122.08});
+            }
+            return cursor;
+        }
+    }
+
+    /**
+     * Sends the loader's query to the provider above.  Loaders keep the application context, so
+     * this is its own.
+     */
+    private static class LoaderContext extends ContextWrapper {
+        private final MockContentResolver mResolver = new MockContentResolver();
+
+        LoaderContext(Context base, ForecastProvider provider) {
+            super(base);
+            mResolver.addProvider(WeatherContract.CONTENT_AUTHORITY, provider);
+        }
+
+        @Override
+        public ContentResolver getContentResolver() {
+            return mResolver;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+    }
+}
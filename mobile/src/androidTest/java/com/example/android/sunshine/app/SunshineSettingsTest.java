@@ -0,0 +1,101 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Compares {@link SunshineSettings#formatTemperature} with the Utility.formatTemperature it
+ * replaced, which read the units from SharedPreferences and the format from the resources on
+ * every call, and benchmarks the throughput of both.
+ */
+public class SunshineSettingsTest extends AndroidTestCase {
+
+    private static final String LOG_TAG = SunshineSettingsTest.class.getSimpleName();
+
+    private static final int CALLS = 100000;
+    // Measured runs after the warm-up run, the median is reported
+    private static final int RUNS = 5;
+
+    public void testFormatsLikeBefore() {
+        SunshineSettings settings = SunshineSettings.get(getContext());
+        for (double temperature = -60; temperature <= 60; temperature += 0.05) {
+            assertEquals(formatTemperatureFromPreferences(getContext(), temperature),
+                    settings.formatTemperature(temperature));
+        }
+    }
+
+    public void testFormatTemperatureBenchmark() {
+        final Context context = getContext();
+        long before = opsPerSecond(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < CALLS; i++) {
+                    formatTemperatureFromPreferences(context, temperature(i));
+                }
+            }
+        });
+        long snapshot = opsPerSecond(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < CALLS; i++) {
+                    SunshineSettings.get(context).formatTemperature(temperature(i));
+                }
+            }
+        });
+        final StringBuilder builder = new StringBuilder();
+        long append = opsPerSecond(new Runnable() {
+            @Override
+            public void run() {
+                SunshineSettings settings = SunshineSettings.get(context);
+                for (int i = 0; i < CALLS; i++) {
+                    builder.setLength(0);
+                    settings.appendTemperature(builder, temperature(i));
+                }
+            }
+        });
+
+        Log.i(LOG_TAG, "formatTemperature, calls per second: SharedPreferences and "
+                + "String.format " + before + ", SunshineSettings " + snapshot
+                + ", appendTemperature into one StringBuilder " + append);
+        assertTrue("SunshineSettings " + snapshot + "/s, before " + before + "/s",
+                snapshot > before);
+    }
+
+    private static double temperature(int i) {
+        return -40 + (i % 1000) * 0.1;
+    }
+
+    /**
+     * @return the median calls per second of RUNS runs, after one to warm up
+     */
+    private static long opsPerSecond(Runnable benchmark) {
+        benchmark.run();
+        long[] opsPerSecond = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            benchmark.run();
+            opsPerSecond[run] = CALLS * 1000000000L / Math.max(1, System.nanoTime() - start);
+        }
+        Arrays.sort(opsPerSecond);
+        return opsPerSecond[RUNS / 2];
+    }
+
+    /**
+     * Utility.formatTemperature as it was before SunshineSettings.
+     */
+    private static String formatTemperatureFromPreferences(Context context, double temperature) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        boolean metric = prefs.getString(context.getString(R.string.pref_units_key),
+                context.getString(R.string.pref_units_metric))
+                .equals(context.getString(R.string.pref_units_metric));
+        if (!metric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return String.format(context.getString(R.string.format_temperature), temperature);
+    }
+}
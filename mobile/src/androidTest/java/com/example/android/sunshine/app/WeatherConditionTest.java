@@ -0,0 +1,107 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import java.util.Locale;
+
+/**
+ * Checks the condition descriptions and art pack URLs, which need the resources and the
+ * preferences, against the chains of ranges they replaced for every condition id and the ids
+ * around them.  UtilityTest checks the rest locally.
+ */
+public class WeatherConditionTest extends AndroidTestCase {
+
+    private static final int FIRST_ID = 0;
+    private static final int LAST_ID = 1000;
+
+    // The ids the switch had a case for, each with a condition_<id> string
+    private static final int[] DESCRIBED_IDS = {
+            500, 501, 502, 503, 504, 511, 520, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804,
+            900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962
+    };
+
+    public void testStringMatchesRanges() {
+        Context context = getContext();
+        for (int id = FIRST_ID; id <= LAST_ID; id++) {
+            assertEquals("description of " + id, stringFromRanges(context, id),
+                    Utility.getStringForWeatherCondition(context, id));
+        }
+    }
+
+    public void testArtUrlMatchesRanges() {
+        Context context = getContext();
+        SunshineSettings settings = SunshineSettings.get(context);
+        for (int id = FIRST_ID; id <= LAST_ID; id++) {
+            String expected = artUrlFromRanges(context, id);
+            assertEquals("art of " + id, expected,
+                    Utility.getArtUrlForWeatherCondition(context, id));
+            assertEquals("art of " + id, expected,
+                    Utility.getArtUrlForWeatherCondition(settings, id));
+        }
+    }
+
+    /**
+     * Utility.getStringForWeatherCondition's ranges and switch, as they were before the table.
+     */
+    private static String stringFromRanges(Context context, int weatherId) {
+        int stringId = 0;
+        if (weatherId >= 200 && weatherId <= 232) {
+            stringId = R.string.condition_2xx;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            stringId = R.string.condition_3xx;
+        } else {
+            for (int id : DESCRIBED_IDS) {
+                if (id == weatherId) {
+                    stringId = context.getResources().getIdentifier("condition_" + id, "string",
+                            context.getPackageName());
+                    assertTrue("no condition_" + id, stringId != 0);
+                }
+            }
+        }
+        if (stringId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
+        }
+        return context.getString(stringId);
+    }
+
+    /**
+     * Utility.getArtUrlForWeatherCondition's chain, as it was before the table.
+     */
+    private static String artUrlFromRanges(Context context, int weatherId) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                context.getString(R.string.pref_art_pack_sunshine));
+
+        if (weatherId >= 200 && weatherId <= 232) {
+            return String.format(Locale.US, formatArtUrl, "storm");
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return String.format(Locale.US, formatArtUrl, "light_rain");
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return String.format(Locale.US, formatArtUrl, "rain");
+        } else if (weatherId == 511) {
+            return String.format(Locale.US, formatArtUrl, "snow");
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return String.format(Locale.US, formatArtUrl, "rain");
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return String.format(Locale.US, formatArtUrl, "snow");
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return String.format(Locale.US, formatArtUrl, "fog");
+        } else if (weatherId == 761 || weatherId == 781) {
+            return String.format(Locale.US, formatArtUrl, "storm");
+        } else if (weatherId == 800) {
+            return String.format(Locale.US, formatArtUrl, "clear");
+        } else if (weatherId == 801) {
+            return String.format(Locale.US, formatArtUrl, "light_clouds");
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return String.format(Locale.US, formatArtUrl, "clouds");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.test.ProviderTestCase2;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Checks the fan-out after a sync costs one query, with {@link ForecastSnapshotCache}'s hit and
+ * miss counters, and that the cache only keeps what can still be asked for.
+ */
+public class ForecastSnapshotCacheTest extends ProviderTestCase2<WeatherProvider> {
+
+    private static final String LOCATION_SETTING = "94043";
+    private static final int DAYS = 14;
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+
+    // Everything that loads the preferred forecast once a sync has stored it: the sync adapter
+    // itself, the today and detail widgets, Muzei and the wearable
+    private static final int POST_SYNC_READERS = 5;
+
+    private Context mContext;
+    private long mLocationId;
+
+    public ForecastSnapshotCacheTest() {
+        super(WeatherProvider.class, WeatherContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Its resolver goes to the provider under test, on a test database
+        mContext = getMockContext();
+        // The test database outlives each test, start from an empty one
+        getMockContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        getMockContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        ContentValues location = new ContentValues();
+        location.put(LocationEntry.COLUMN_LOCATION_SETTING, LOCATION_SETTING);
+        location.put(LocationEntry.COLUMN_CITY_NAME, "Mountain View");
+        location.put(LocationEntry.COLUMN_COORD_LAT, 37.39);
+        location.put(LocationEntry.COLUMN_COORD_LONG, -122.08);
+        mLocationId = ContentUris.parseId(
+                getMockContentResolver().insert(LocationEntry.CONTENT_URI, location));
+        writeForecast(0);
+    }
+
+    public void testFanoutAfterSyncQueriesOnce() {
+        int hits = ForecastSnapshotCache.getHitCount();
+        int misses = ForecastSnapshotCache.getMissCount();
+        ForecastSnapshot first = null;
+        // Each reader asks with its own idea of now, like they do
+        for (int reader = 0; reader < POST_SYNC_READERS; reader++) {
+            ForecastSnapshot snapshot = ForecastSnapshotCache.get(mContext, LOCATION_SETTING,
+                    System.currentTimeMillis());
+            assertNotNull(snapshot);
+            assertEquals(DAYS, snapshot.size());
+            if (first == null) {
+                first = snapshot;
+            }
+            assertSame(first, snapshot);
+        }
+        assertEquals(1, ForecastSnapshotCache.getMissCount() - misses);
+        assertEquals(POST_SYNC_READERS - 1, ForecastSnapshotCache.getHitCount() - hits);
+    }
+
+    public void testWritesInvalidateOnlyWhenSomethingChanged() {
+        ForecastSnapshot snapshot = ForecastSnapshotCache.get(mContext, LOCATION_SETTING,
+                System.currentTimeMillis());
+
+        // The same forecast again, what most periodic syncs get
+        writeForecast(0);
+        int misses = ForecastSnapshotCache.getMissCount();
+        assertSame(snapshot, ForecastSnapshotCache.get(mContext, LOCATION_SETTING,
+                System.currentTimeMillis()));
+        assertEquals(misses, ForecastSnapshotCache.getMissCount());
+
+        writeForecast(1);
+        ForecastSnapshot changed = ForecastSnapshotCache.get(mContext, LOCATION_SETTING,
+                System.currentTimeMillis());
+        assertNotSame(snapshot, changed);
+        assertEquals(misses + 1, ForecastSnapshotCache.getMissCount());
+    }
+
+    public void testDropsPastDaysWhenAddingAnother() {
+        long yesterday = System.currentTimeMillis() - DAY_IN_MILLIS;
+        int misses = ForecastSnapshotCache.getMissCount();
+        ForecastSnapshotCache.get(mContext, LOCATION_SETTING, yesterday);
+        ForecastSnapshotCache.get(mContext, LOCATION_SETTING, yesterday);
+        assertEquals("yesterday's snapshot is cached until another is added", misses + 1,
+                ForecastSnapshotCache.getMissCount());
+
+        ForecastSnapshotCache.get(mContext, LOCATION_SETTING, System.currentTimeMillis());
+        ForecastSnapshotCache.get(mContext, LOCATION_SETTING, yesterday);
+        assertEquals("adding today's snapshot drops yesterday's", misses + 3,
+                ForecastSnapshotCache.getMissCount());
+    }
+
+    /**
+     * Stores a forecast from today on through the provider, like a sync does.
+     *
+     * @param shift added to every value, so a forecast with another shift changes every row
+     */
+    private void writeForecast(int shift) {
+        Time time = new Time();
+        time.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        WeatherBatch batch = new WeatherBatch(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            batch.add(mLocationId, time.setJulianDay(julianStartDay + i), 800 + (i + shift) % 5,
+                    "Clear", 10.5 + i + shift, 20.5 + i + shift, 70 + shift, 1013.5 + shift,
+                    3.5 + shift, 270 + shift);
+        }
+        getProvider().call(WeatherContract.METHOD_BULK_INSERT_WEATHER, null, batch.toBundle());
+    }
+}
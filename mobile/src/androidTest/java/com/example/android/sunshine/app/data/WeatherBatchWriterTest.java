@@ -0,0 +1,186 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Checks {@link WeatherBatchWriter} writes what db.insert with ContentValues would, and
+ * benchmarks both at 14, 1,000 and 100,000 rows.
+ */
+public class WeatherBatchWriterTest extends AndroidTestCase {
+
+    private static final String LOG_TAG = WeatherBatchWriterTest.class.getSimpleName();
+
+    // Rows beyond this many days go to further locations, so no date is past 2038
+    private static final int DAYS_PER_LOCATION = 1000;
+    private static final int LOCATIONS = 100;
+
+    private SQLiteDatabase mDb;
+    private final long[] mLocationIds = new long[LOCATIONS];
+    private int mJulianStartDay;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // In memory, so the benchmark measures the statements rather than the flash
+        mDb = SQLiteDatabase.create(null);
+        new WeatherDbHelper(getContext()).onCreate(mDb);
+        for (int i = 0; i < LOCATIONS; i++) {
+            ContentValues location = new ContentValues();
+            location.put(LocationEntry.COLUMN_LOCATION_SETTING, "location-" + i);
+            location.put(LocationEntry.COLUMN_CITY_NAME, "City " + i);
+            location.put(LocationEntry.COLUMN_COORD_LAT, 37.39);
+            location.put(LocationEntry.COLUMN_COORD_LONG, -122.08);
+            mLocationIds[i] = mDb.insert(LocationEntry.TABLE_NAME, null, location);
+        }
+        Time time = new Time();
+        time.setToNow();
+        mJulianStartDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    public void testWritesSameRowsAsContentValues() {
+        WeatherBatch batch = createBatch(14, 0);
+        assertEquals(14, writeBatch(batch));
+        String batchRows = dumpWeather();
+
+        clearWeather();
+        insertContentValues(batch);
+        assertEquals(dumpWeather(), batchRows);
+    }
+
+    public void testSkipsUnchangedAndUpdatesChangedRows() {
+        assertEquals(14, writeBatch(createBatch(14, 0)));
+        long firstId = DatabaseUtils.longForQuery(mDb,
+                "SELECT MIN(" + WeatherEntry._ID + ") FROM " + WeatherEntry.TABLE_NAME, null);
+
+        assertEquals(0, writeBatch(createBatch(14, 0)));
+        assertEquals(14, writeBatch(createBatch(14, 1)));
+        assertEquals(14, DatabaseUtils.queryNumEntries(mDb, WeatherEntry.TABLE_NAME));
+        assertEquals("updated rows must keep their _id", firstId, DatabaseUtils.longForQuery(mDb,
+                "SELECT MIN(" + WeatherEntry._ID + ") FROM " + WeatherEntry.TABLE_NAME, null));
+    }
+
+    public void testBenchmark() {
+        for (int rows : new int[] {14, 1000, 100000}) {
+            WeatherBatch batch = createBatch(rows, 0);
+
+            clearWeather();
+            long start = System.nanoTime();
+            insertContentValues(batch);
+            long contentValuesMillis = (System.nanoTime() - start) / 1000000L;
+
+            clearWeather();
+            start = System.nanoTime();
+            assertEquals(rows, writeBatch(batch));
+            long batchMillis = (System.nanoTime() - start) / 1000000L;
+
+            // What a periodic sync mostly does: write the forecast we already have again
+            start = System.nanoTime();
+            assertEquals(0, writeBatch(batch));
+            long unchangedMillis = (System.nanoTime() - start) / 1000000L;
+
+            Log.i(LOG_TAG, rows + " rows: ContentValues " + contentValuesMillis
+                    + "ms, compiled statements " + batchMillis + "ms, again unchanged "
+                    + unchangedMillis + "ms");
+            assertEquals(rows, DatabaseUtils.queryNumEntries(mDb, WeatherEntry.TABLE_NAME));
+        }
+    }
+
+    /**
+     * @param shift added to every value, so a batch with another shift changes every row
+     */
+    private WeatherBatch createBatch(int rows, int shift) {
+        Time time = new Time();
+        WeatherBatch batch = new WeatherBatch(rows);
+        for (int i = 0; i < rows; i++) {
+            long date = time.setJulianDay(mJulianStartDay + i % DAYS_PER_LOCATION);
+            batch.add(mLocationIds[i / DAYS_PER_LOCATION], date, 800 + (i + shift) % 5, "Clear",
+                    10.5 + i + shift, 20.5 + i + shift, 70 + shift, 1013.5 + shift, 3.5 + shift,
+                    270 + shift);
+        }
+        return batch;
+    }
+
+    private int writeBatch(WeatherBatch batch) {
+        WeatherBatchWriter writer = new WeatherBatchWriter(mDb);
+        mDb.beginTransaction();
+        try {
+            int written = writer.write(batch);
+            mDb.setTransactionSuccessful();
+            return written;
+        } finally {
+            mDb.endTransaction();
+            writer.close();
+        }
+    }
+
+    /**
+     * What bulkInsert did before: a ContentValues per row, each handed to db.insert.
+     */
+    private void insertContentValues(WeatherBatch batch) {
+        mDb.beginTransaction();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                ContentValues values = new ContentValues();
+                values.put(WeatherEntry.COLUMN_LOC_KEY, batch.getLocationId(i));
+                values.put(WeatherEntry.COLUMN_DATE, batch.getDate(i));
+                values.put(WeatherEntry.COLUMN_WEATHER_ID, batch.getWeatherId(i));
+                values.put(WeatherEntry.COLUMN_SHORT_DESC, batch.getShortDesc(i));
+                values.put(WeatherEntry.COLUMN_MIN_TEMP, batch.getMinTemp(i));
+                values.put(WeatherEntry.COLUMN_MAX_TEMP, batch.getMaxTemp(i));
+                values.put(WeatherEntry.COLUMN_HUMIDITY, batch.getHumidity(i));
+                values.put(WeatherEntry.COLUMN_PRESSURE, batch.getPressure(i));
+                values.put(WeatherEntry.COLUMN_WIND_SPEED, batch.getWindSpeed(i));
+                values.put(WeatherEntry.COLUMN_DEGREES, batch.getDegrees(i));
+                mDb.insert(WeatherEntry.TABLE_NAME, null, values);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private void clearWeather() {
+        mDb.delete(WeatherEntry.TABLE_NAME, null, null);
+    }
+
+    /**
+     * @return every column but _id of every row, in a form that compares with equals
+     */
+    private String dumpWeather() {
+        Cursor cursor = mDb.query(WeatherEntry.TABLE_NAME,
+                new String[] {WeatherEntry.COLUMN_LOC_KEY, WeatherEntry.COLUMN_DATE,
+                        WeatherEntry.COLUMN_WEATHER_ID, WeatherEntry.COLUMN_SHORT_DESC,
+                        WeatherEntry.COLUMN_MIN_TEMP, WeatherEntry.COLUMN_MAX_TEMP,
+                        WeatherEntry.COLUMN_HUMIDITY, WeatherEntry.COLUMN_PRESSURE,
+                        WeatherEntry.COLUMN_WIND_SPEED, WeatherEntry.COLUMN_DEGREES},
+                null, null, null, null,
+                WeatherEntry.COLUMN_LOC_KEY + ", " + WeatherEntry.COLUMN_DATE);
+        StringBuilder rows = new StringBuilder();
+        try {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    rows.append(cursor.getString(i)).append(i + 1 < cursor.getColumnCount()
+                            ? ',' : '\n');
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows.toString();
+    }
+}
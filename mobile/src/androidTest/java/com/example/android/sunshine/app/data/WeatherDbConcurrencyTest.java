@@ -0,0 +1,194 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+
+/**
+ * Reads the forecast the way the list and the widgets do while a sync writes a large batch,
+ * with the rollback journal weather.db used to have and in write-ahead logging mode, and
+ * reports the readers' 99th percentile latency for both.
+ */
+public class WeatherDbConcurrencyTest extends AndroidTestCase {
+
+    private static final String LOG_TAG = WeatherDbConcurrencyTest.class.getSimpleName();
+
+    private static final int LOCATIONS = 10;
+    private static final int DAYS_PER_LOCATION = 1000;
+    // Each one its own transaction, like a sync of LOCATIONS locations
+    private static final int WRITES = 6;
+    private static final int READERS = 3;
+
+    private Context mContext;
+    private int mJulianStartDay;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Keeps the file away from the app's own weather.db
+        mContext = new RenamingDelegatingContext(getContext(), "test.");
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        Time time = new Time();
+        time.setToNow();
+        mJulianStartDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testReadersDuringBulkWrite() throws Exception {
+        long rollbackP99 = readerP99(false);
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        long walP99 = readerP99(true);
+
+        Log.i(LOG_TAG, "Reader p99 during a bulk write: rollback journal "
+                + rollbackP99 / 1000 + "us, write-ahead log " + walP99 / 1000 + "us");
+        assertTrue("write-ahead log p99 " + walP99 + "ns >= rollback journal p99 "
+                + rollbackP99 + "ns", walP99 < rollbackP99);
+    }
+
+    /**
+     * @return the 99th percentile of the reads done while the batches were written, in ns
+     */
+    private long readerP99(boolean writeAheadLogging) throws Exception {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        helper.setWriteAheadLoggingEnabled(writeAheadLogging);
+        try {
+            final SQLiteDatabase db = helper.getWritableDatabase();
+            final long[] locationIds = insertLocations(db);
+            final WeatherBatch[] batches = {createBatch(locationIds, 0),
+                    createBatch(locationIds, 1)};
+            writeBatch(db, batches[0]);
+
+            final boolean[] writing = {true};
+            final long[][] latencies = new long[READERS][];
+            Thread[] readers = new Thread[READERS];
+            for (int r = 0; r < READERS; r++) {
+                final int reader = r;
+                readers[r] = new Thread("reader " + r) {
+                    @Override
+                    public void run() {
+                        latencies[reader] = read(db, writing);
+                    }
+                };
+                readers[r].start();
+            }
+
+            // Every batch changes every row of the one before, so each write is a full one
+            for (int i = 1; i <= WRITES; i++) {
+                writeBatch(db, batches[i % 2]);
+            }
+            synchronized (writing) {
+                writing[0] = false;
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            return percentile(latencies, 0.99);
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * The forecast of one location from today on, as the list and the widgets query it, over
+     * and over until the writes are done.
+     */
+    private long[] read(SQLiteDatabase db, boolean[] writing) {
+        String[] selectionArgs = {"location-0", Long.toString(new Time().setJulianDay(
+                mJulianStartDay))};
+        long[] latencies = new long[1024];
+        int count = 0;
+        while (true) {
+            synchronized (writing) {
+                if (!writing[0]) {
+                    break;
+                }
+            }
+            long start = System.nanoTime();
+            Cursor cursor = WeatherProvider.sWeatherByLocationSettingQueryBuilder.query(db, null,
+                    WeatherProvider.sLocationSettingWithStartDateSelection, selectionArgs, null,
+                    null, WeatherEntry.COLUMN_DATE + " ASC");
+            try {
+                // Filling the window is what runs the query
+                cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private long[] insertLocations(SQLiteDatabase db) {
+        long[] locationIds = new long[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            ContentValues location = new ContentValues();
+            location.put(LocationEntry.COLUMN_LOCATION_SETTING, "location-" + i);
+            location.put(LocationEntry.COLUMN_CITY_NAME, "City " + i);
+            location.put(LocationEntry.COLUMN_COORD_LAT, 37.39);
+            location.put(LocationEntry.COLUMN_COORD_LONG, -122.08);
+            locationIds[i] = db.insert(LocationEntry.TABLE_NAME, null, location);
+        }
+        return locationIds;
+    }
+
+    /**
+     * @param shift added to every value, so a batch with another shift changes every row
+     */
+    private WeatherBatch createBatch(long[] locationIds, int shift) {
+        Time time = new Time();
+        WeatherBatch batch = new WeatherBatch(LOCATIONS * DAYS_PER_LOCATION);
+        for (int i = 0; i < LOCATIONS * DAYS_PER_LOCATION; i++) {
+            long date = time.setJulianDay(mJulianStartDay + i % DAYS_PER_LOCATION);
+            batch.add(locationIds[i / DAYS_PER_LOCATION], date, 800 + (i + shift) % 5, "Clear",
+                    10.5 + i + shift, 20.5 + i + shift, 70 + shift, 1013.5 + shift, 3.5 + shift,
+                    270 + shift);
+        }
+        return batch;
+    }
+
+    private static void writeBatch(SQLiteDatabase db, WeatherBatch batch) {
+        WeatherBatchWriter writer = new WeatherBatchWriter(db);
+        db.beginTransaction();
+        try {
+            assertEquals(batch.size(), writer.write(batch));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            writer.close();
+        }
+    }
+
+    private static long percentile(long[][] latencies, double percentile) {
+        int count = 0;
+        for (long[] reader : latencies) {
+            count += reader.length;
+        }
+        assertTrue("no reads during the writes", count > 0);
+        long[] all = new long[count];
+        int offset = 0;
+        for (long[] reader : latencies) {
+            System.arraycopy(reader, 0, all, offset, reader.length);
+            offset += reader.length;
+        }
+        Arrays.sort(all);
+        return all[Math.min(count - 1, (int) (count * percentile))];
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Writes weather.db files as older and newer versions of the app left them, then opens them
+ * through {@link WeatherDbHelper}: version 2 has to be migrated with its rows, anything
+ * older or newer recreated.
+ */
+public class WeatherDbMigrationTest extends AndroidTestCase {
+
+    private static final String LOG_TAG = WeatherDbMigrationTest.class.getSimpleName();
+
+    private static final int LOCATIONS = 10;
+    private static final int DAYS_PER_LOCATION = 1000;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    // The schema as versions 1 and 2 created it, without weather_location_date
+    private static final String SQL_CREATE_LOCATION_TABLE_V2 =
+            "CREATE TABLE location (_id INTEGER PRIMARY KEY,"
+                    + "location_setting TEXT UNIQUE NOT NULL, city_name TEXT NOT NULL, "
+                    + "coord_lat REAL NOT NULL, coord_long REAL NOT NULL  );";
+    private static final String SQL_CREATE_WEATHER_TABLE_V2 =
+            "CREATE TABLE weather (_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + "location_id INTEGER NOT NULL, date INTEGER NOT NULL, "
+                    + "short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL,"
+                    + "min REAL NOT NULL, max REAL NOT NULL, humidity REAL NOT NULL, "
+                    + "pressure REAL NOT NULL, wind REAL NOT NULL, degrees REAL NOT NULL, "
+                    + " FOREIGN KEY (location_id) REFERENCES location (_id), "
+                    + " UNIQUE (date, location_id) ON CONFLICT REPLACE);";
+
+    // Keeps the files away from the app's own weather.db
+    private Context mContext;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = new RenamingDelegatingContext(getContext(), "test.");
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testMigratesVersion2WithItsRows() {
+        createDatabase(2);
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        long start = System.nanoTime();
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long migrateMillis = (System.nanoTime() - start) / 1000000L;
+        try {
+            Log.i(LOG_TAG, "Opened a version 2 database of " + LOCATIONS * DAYS_PER_LOCATION
+                    + " rows in " + migrateMillis + "ms");
+            assertEquals(LOCATIONS, DatabaseUtils.queryNumEntries(db, LocationEntry.TABLE_NAME));
+            assertEquals(LOCATIONS * DAYS_PER_LOCATION,
+                    DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+            assertTrue(WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE + " missing",
+                    hasIndex(db, WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE));
+            assertEquals("integrity_check", "ok",
+                    DatabaseUtils.stringForQuery(db, "PRAGMA integrity_check", null));
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testRecreatesVersionsTooOldToMigrate() {
+        createDatabase(1);
+        assertRecreated();
+    }
+
+    public void testRecreatesOnDowngrade() {
+        createDatabase(currentVersion() + 1);
+        assertRecreated();
+    }
+
+    /**
+     * @return the version the current WeatherDbHelper creates
+     */
+    private int currentVersion() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        try {
+            return helper.getReadableDatabase().getVersion();
+        } finally {
+            helper.close();
+            mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        }
+    }
+
+    private void assertRecreated() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            assertEquals(0, DatabaseUtils.queryNumEntries(db, LocationEntry.TABLE_NAME));
+            assertEquals(0, DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+            assertTrue(WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE + " missing",
+                    hasIndex(db, WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE));
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * Writes the version 2 schema, with LOCATIONS locations of DAYS_PER_LOCATION days each, and
+     * marks the file as the given version.
+     */
+    private void createDatabase(int version) {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(WeatherDbHelper.DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        try {
+            db.beginTransaction();
+            try {
+                db.execSQL(SQL_CREATE_LOCATION_TABLE_V2);
+                db.execSQL(SQL_CREATE_WEATHER_TABLE_V2);
+                SQLiteStatement location = db.compileStatement("INSERT INTO location "
+                        + "(location_setting, city_name, coord_lat, coord_long) "
+                        + "VALUES (?, ?, ?, ?)");
+                SQLiteStatement weather = db.compileStatement("INSERT INTO weather "
+                        + "(location_id, date, short_desc, weather_id, min, max, humidity, "
+                        + "pressure, wind, degrees) VALUES (?, ?, 'Clear', ?, ?, ?, 70, 1013.5, "
+                        + "3.5, 270)");
+                for (int i = 0; i < LOCATIONS; i++) {
+                    location.bindString(1, "location-" + i);
+                    location.bindString(2, "City " + i);
+                    location.bindDouble(3, 37.39);
+                    location.bindDouble(4, -122.08);
+                    long locationId = location.executeInsert();
+                    for (int day = 0; day < DAYS_PER_LOCATION; day++) {
+                        weather.bindLong(1, locationId);
+                        weather.bindLong(2, 1462000000000L + day * DAY_MILLIS);
+                        weather.bindLong(3, 800 + day % 5);
+                        weather.bindDouble(4, 10.5 + day % 20);
+                        weather.bindDouble(5, 20.5 + day % 20);
+                        weather.executeInsert();
+                    }
+                }
+                location.close();
+                weather.close();
+                db.setVersion(version);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private static boolean hasIndex(SQLiteDatabase db, String name) {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = ?",
+                new String[] {name}) == 1;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Checks that writing the forecast that is already stored, what most periodic syncs do, writes
+ * no row and tells no observer, through both bulk write paths of {@link WeatherProvider}.
+ *
+ * The provider runs against a test database.  Its resolver drops notifications, so they are
+ * counted with {@link WeatherProvider#getChangeNotificationCount}.
+ */
+public class WeatherProviderWriteTest extends ProviderTestCase2<WeatherProvider> {
+
+    private static final int DAYS = 14;
+
+    private long mLocationId;
+    private int mJulianStartDay;
+
+    public WeatherProviderWriteTest() {
+        super(WeatherProvider.class, WeatherContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // The test database outlives each test, start from an empty one
+        getMockContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        getMockContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        ContentValues location = new ContentValues();
+        location.put(LocationEntry.COLUMN_LOCATION_SETTING, "94043");
+        location.put(LocationEntry.COLUMN_CITY_NAME, "Mountain View");
+        location.put(LocationEntry.COLUMN_COORD_LAT, 37.39);
+        location.put(LocationEntry.COLUMN_COORD_LONG, -122.08);
+        mLocationId = ContentUris.parseId(
+                getMockContentResolver().insert(LocationEntry.CONTENT_URI, location));
+        Time time = new Time();
+        time.setToNow();
+        mJulianStartDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+
+    public void testIdenticalBatchWritesNothing() {
+        assertBatchWrite(createBatch(0), DAYS, 1);
+        assertBatchWrite(createBatch(0), 0, 0);
+        assertBatchWrite(createBatch(1), DAYS, 1);
+        assertBatchWrite(createBatch(1), 0, 0);
+    }
+
+    public void testIdenticalBulkInsertWritesNothing() {
+        assertBulkInsert(createValues(createBatch(0)), DAYS, 1);
+        assertBulkInsert(createValues(createBatch(0)), 0, 0);
+        assertBulkInsert(createValues(createBatch(1)), DAYS, 1);
+        assertBulkInsert(createValues(createBatch(1)), 0, 0);
+    }
+
+    private void assertBatchWrite(WeatherBatch batch, int expectedRows,
+                                  int expectedNotifications) {
+        int rowsBefore = WeatherProvider.getRowsWrittenCount();
+        int notificationsBefore = WeatherProvider.getChangeNotificationCount();
+        Bundle result = getProvider().call(WeatherContract.METHOD_BULK_INSERT_WEATHER, null,
+                batch.toBundle());
+        assertEquals(expectedRows, result.getInt(WeatherContract.EXTRA_ROWS_WRITTEN));
+        assertEquals(expectedRows, WeatherProvider.getRowsWrittenCount() - rowsBefore);
+        assertEquals(expectedNotifications,
+                WeatherProvider.getChangeNotificationCount() - notificationsBefore);
+    }
+
+    private void assertBulkInsert(ContentValues[] values, int expectedRows,
+                                  int expectedNotifications) {
+        int rowsBefore = WeatherProvider.getRowsWrittenCount();
+        int notificationsBefore = WeatherProvider.getChangeNotificationCount();
+        assertEquals(expectedRows,
+                getMockContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values));
+        assertEquals(expectedRows, WeatherProvider.getRowsWrittenCount() - rowsBefore);
+        assertEquals(expectedNotifications,
+                WeatherProvider.getChangeNotificationCount() - notificationsBefore);
+    }
+
+    /**
+     * @param shift added to every value, so a batch with another shift changes every row
+     */
+    private WeatherBatch createBatch(int shift) {
+        Time time = new Time();
+        WeatherBatch batch = new WeatherBatch(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            batch.add(mLocationId, time.setJulianDay(mJulianStartDay + i), 800 + (i + shift) % 5,
+                    "Clear", 10.5 + i + shift, 20.5 + i + shift, 70 + shift, 1013.5 + shift,
+                    3.5 + shift, 270 + shift);
+        }
+        return batch;
+    }
+
+    private static ContentValues[] createValues(WeatherBatch batch) {
+        ContentValues[] values = new ContentValues[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            values[i] = new ContentValues();
+            values[i].put(WeatherEntry.COLUMN_LOC_KEY, batch.getLocationId(i));
+            values[i].put(WeatherEntry.COLUMN_DATE, batch.getDate(i));
+            values[i].put(WeatherEntry.COLUMN_WEATHER_ID, batch.getWeatherId(i));
+            values[i].put(WeatherEntry.COLUMN_SHORT_DESC, batch.getShortDesc(i));
+            values[i].put(WeatherEntry.COLUMN_MIN_TEMP, batch.getMinTemp(i));
+            values[i].put(WeatherEntry.COLUMN_MAX_TEMP, batch.getMaxTemp(i));
+            values[i].put(WeatherEntry.COLUMN_HUMIDITY, batch.getHumidity(i));
+            values[i].put(WeatherEntry.COLUMN_PRESSURE, batch.getPressure(i));
+            values[i].put(WeatherEntry.COLUMN_WIND_SPEED, batch.getWindSpeed(i));
+            values[i].put(WeatherEntry.COLUMN_DEGREES, batch.getDegrees(i));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Runs EXPLAIN QUERY PLAN over the queries the app sends to {@link WeatherProvider}, so a
+ * schema change that drops them back to a table scan or a temporary sort fails here.
+ */
+public class WeatherQueryPlanTest extends AndroidTestCase {
+
+    // What the forecast list and ForecastSnapshotCache sort by
+    private static final String SORT_BY_DATE = WeatherEntry.COLUMN_DATE + " ASC";
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDb = SQLiteDatabase.create(null);
+        new WeatherDbHelper(getContext()).onCreate(mDb);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    /**
+     * weather/{location} without a start date.
+     */
+    public void testWeatherWithLocation() {
+        assertSearchesByIndex(WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(
+                null, WeatherProvider.sLocationSettingSelection, null, null, SORT_BY_DATE, null),
+                "location-setting");
+    }
+
+    /**
+     * weather/{location}?date=, the forecast list and the widgets.
+     */
+    public void testWeatherWithLocationAndStartDate() {
+        String sql = WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(null,
+                WeatherProvider.sLocationSettingWithStartDateSelection, null, null, SORT_BY_DATE,
+                null);
+        assertSearchesByIndex(sql, "location-setting", "1462000000000");
+        assertUsesIndex(WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE, sql, "location-setting",
+                "1462000000000");
+    }
+
+    /**
+     * weather/{location}/date, the detail view and the detail widget.
+     */
+    public void testWeatherWithLocationAndDate() {
+        assertSearchesByIndex(WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(
+                null, WeatherProvider.sLocationSettingAndDaySelection, null, null, null, null),
+                "location-setting", "1462000000000");
+    }
+
+    /**
+     * location, as the sync adapter looks a location up before adding it.
+     */
+    public void testLocationBySetting() {
+        assertSearchesByIndex("SELECT " + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME
+                + " WHERE " + LocationEntry.COLUMN_LOCATION_SETTING + " = ?", "location-setting");
+    }
+
+    /**
+     * weather, as the sync adapter deletes the days that have passed.
+     */
+    public void testWeatherBeforeDate() {
+        assertSearchesByIndex("SELECT " + WeatherEntry._ID + " FROM " + WeatherEntry.TABLE_NAME
+                + " WHERE " + WeatherEntry.COLUMN_DATE + " <= ?", "1462000000000");
+    }
+
+    private void assertSearchesByIndex(String sql, String... args) {
+        String plan = explain(sql, args);
+        for (String step : plan.split("\n")) {
+            assertTrue("not an index search: " + step + "\nin " + sql,
+                    step.startsWith("SEARCH ") && step.contains(" USING "));
+            assertFalse("table scan: " + step + "\nin " + sql, step.contains("SCAN"));
+            assertFalse("temporary sort: " + step + "\nin " + sql, step.contains("TEMP B-TREE"));
+        }
+    }
+
+    private void assertUsesIndex(String index, String sql, String... args) {
+        String plan = explain(sql, args);
+        assertTrue(index + " not used:\n" + plan, plan.contains(" " + index + " "));
+    }
+
+    /**
+     * @return the detail column of every step of the plan, one per line
+     */
+    private String explain(String sql, String... args) {
+        Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                if (plan.length() > 0) {
+                    plan.append('\n');
+                }
+                plan.append(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertTrue("no plan for " + sql, plan.length() > 0);
+        return plan.toString();
+    }
+}
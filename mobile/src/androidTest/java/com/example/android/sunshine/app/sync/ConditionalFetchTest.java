@@ -0,0 +1,136 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.data.WeatherBatch;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.Map;
+
+/**
+ * Runs {@link ForecastFetch} against {@link MockForecastServer} to check the validators are
+ * stored and sent back, and that a 304 leaves nothing to store.
+ */
+public class ConditionalFetchTest extends AndroidTestCase {
+
+    private static final String LOCATION = "sunshine-test-conditional-fetch";
+    private static final String ETAG = "\"forecast-v1\"";
+    private static final String LAST_MODIFIED = "Wed, 01 Jun 2016 10:00:00 GMT";
+
+    private MockForecastServer mServer;
+    private int mJulianStartDay;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new MockForecastServer();
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        mJulianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        deleteForecast();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteForecast();
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testSendsStoredValidators() throws Exception {
+        mServer.setResponse(200,
+                "ETag: " + ETAG + "\r\nLast-Modified: " + LAST_MODIFIED + "\r\n",
+                ForecastJsonParserTest.buildResponse(14, null));
+        ForecastFetch first = fetch();
+        assertEquals(ForecastFetch.RESULT_OK, first.getResult());
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, first.getLocationStatus());
+        assertEquals(14, first.getParser().getWeatherBatch().size());
+        assertNull("nothing stored yet, but the request was conditional",
+                mServer.getRequests().get(0).get("if-none-match"));
+
+        // What the sync adapter does with a successful fetch
+        storeForecast(first);
+        first.storeValidators();
+
+        mServer.setResponse(304, "ETag: " + ETAG + "\r\n", "");
+        ForecastFetch second = fetch();
+        Map<String, String> request = mServer.getRequests().get(1);
+        assertEquals(ETAG, request.get("if-none-match"));
+        assertEquals(LAST_MODIFIED, request.get("if-modified-since"));
+        assertEquals(ForecastFetch.RESULT_NOT_MODIFIED, second.getResult());
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, second.getLocationStatus());
+        assertNull("a 304 must leave nothing to parse or store", second.getParser());
+    }
+
+    public void testNoValidatorsWithoutStoredForecast() throws Exception {
+        // Validators left over, but the rows they belong to are gone
+        getPreferences().edit()
+                .putString(getContext().getString(R.string.pref_forecast_etag_prefix) + LOCATION,
+                        ETAG)
+                .putString(getContext().getString(R.string.pref_forecast_last_modified_prefix)
+                        + LOCATION, LAST_MODIFIED)
+                .commit();
+        mServer.setResponse(200, "", ForecastJsonParserTest.buildResponse(14, null));
+
+        ForecastFetch fetch = fetch();
+        Map<String, String> request = mServer.getRequests().get(0);
+        assertNull(request.get("if-none-match"));
+        assertNull(request.get("if-modified-since"));
+        assertEquals(ForecastFetch.RESULT_OK, fetch.getResult());
+    }
+
+    public void testServerErrorIsNotStored() throws Exception {
+        mServer.setResponse(200, "", "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}");
+        ForecastFetch fetch = fetch();
+        assertEquals(ForecastFetch.RESULT_FAILED, fetch.getResult());
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_INVALID, fetch.getLocationStatus());
+    }
+
+    private ForecastFetch fetch() {
+        return new ForecastFetch(getContext(), mServer.getBaseUrl(), LOCATION, mJulianStartDay,
+                new SyncTrace()).call();
+    }
+
+    private void storeForecast(ForecastFetch fetch) {
+        ForecastJsonParser parser = fetch.getParser();
+        ContentValues location = new ContentValues();
+        location.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, LOCATION);
+        location.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, parser.getCityName());
+        location.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, parser.getCityLatitude());
+        location.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, parser.getCityLongitude());
+        Uri locationUri = getContext().getContentResolver().insert(
+                WeatherContract.LocationEntry.CONTENT_URI, location);
+        WeatherBatch batch = parser.getWeatherBatch();
+        batch.setLocationId(0, ContentUris.parseId(locationUri));
+        getContext().getContentResolver().call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_WEATHER, null, batch.toBundle());
+    }
+
+    private void deleteForecast() {
+        getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " IN (SELECT "
+                        + WeatherContract.LocationEntry._ID + " FROM "
+                        + WeatherContract.LocationEntry.TABLE_NAME + " WHERE "
+                        + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?)",
+                new String[] {LOCATION});
+        getContext().getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[] {LOCATION});
+        getPreferences().edit()
+                .remove(getContext().getString(R.string.pref_forecast_etag_prefix) + LOCATION)
+                .remove(getContext().getString(R.string.pref_forecast_last_modified_prefix)
+                        + LOCATION)
+                .commit();
+    }
+
+    private SharedPreferences getPreferences() {
+        return PreferenceManager.getDefaultSharedPreferences(getContext());
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.android.sunshine.app.sync;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherBatch;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Checks {@link ForecastJsonParser} against what the JSONObject parser it replaced accepted,
+ * and compares how much both allocate for one response.
+ */
+public class ForecastJsonParserTest extends AndroidTestCase {
+
+    private static final String LOG_TAG = ForecastJsonParserTest.class.getSimpleName();
+
+    private static final int JULIAN_START_DAY = 2457500;
+
+    public void testParsesForecast() throws Exception {
+        ForecastJsonParser parser = parse(buildResponse(14, null));
+
+        assertEquals("Mountain View", parser.getCityName());
+        assertEquals(37.39, parser.getCityLatitude(), 1e-9);
+        assertEquals(-122.08, parser.getCityLongitude(), 1e-9);
+        WeatherBatch batch = parser.getWeatherBatch();
+        assertEquals(14, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(800 + i % 5, batch.getWeatherId(i));
+            assertEquals("Clear", batch.getShortDesc(i));
+            assertEquals(20.5 + i, batch.getMaxTemp(i), 1e-9);
+            assertEquals(10.25 + i, batch.getMinTemp(i), 1e-9);
+            assertEquals(1013.5, batch.getPressure(i), 1e-9);
+            assertEquals(71, batch.getHumidity(i), 1e-9);
+            assertEquals(3.5, batch.getWindSpeed(i), 1e-9);
+            assertEquals(270, batch.getDegrees(i), 1e-9);
+        }
+        for (int i = 1; i < batch.size(); i++) {
+            assertTrue("days out of order", batch.getDate(i) > batch.getDate(i - 1));
+        }
+    }
+
+    public void testRejectsDayWithoutRequiredField() throws Exception {
+        String[] required = {"pressure", "humidity", "speed", "deg", "max", "min", "main", "id"};
+        for (String field : required) {
+            try {
+                parse(buildResponse(14, field));
+                fail("a day without " + field + " was accepted");
+            } catch (JSONException expected) {
+                // like JSONObject.getDouble or getInt on a missing field
+            }
+        }
+    }
+
+    public void testRejectsResponseWithoutCity() throws Exception {
+        String response = buildResponse(14, null);
+        try {
+            parse(response.replace("\"city\"", "\"town\""));
+            fail("a response without a city was accepted");
+        } catch (JSONException expected) {
+        }
+        try {
+            parse(response.replace("\"lat\"", "\"latitude\""));
+            fail("a city without coordinates was accepted");
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testMessageCode() throws Exception {
+        ForecastJsonParser parser = parse("{\"cod\":\"404\",\"message\":\"Error: Not found city\"}");
+        assertEquals(404, parser.getMessageCode());
+    }
+
+    public void testMalformedResponse() throws Exception {
+        try {
+            parse(buildResponse(14, null).substring(0, 200));
+            fail("a truncated response was accepted");
+        } catch (IOException | JSONException expected) {
+        }
+    }
+
+    /**
+     * The numDays = 14 response, and one as long as an hourly forecast.
+     */
+    public void testAllocatesLessThanJsonObject() throws Exception {
+        for (int days : new int[] {14, 240}) {
+            byte[] response = buildResponse(days, null).getBytes("UTF-8");
+            // Once each first, so class loading isn't counted
+            parseStreaming(response);
+            parseJsonObject(response);
+
+            long streamingBytes = allocatedBytes(response, true);
+            long jsonObjectBytes = allocatedBytes(response, false);
+            Log.i(LOG_TAG, days + " days: streaming parser allocated " + streamingBytes
+                    + " bytes, JSONObject parser " + jsonObjectBytes + " bytes");
+            assertTrue(days + " days: " + streamingBytes + " >= " + jsonObjectBytes,
+                    streamingBytes < jsonObjectBytes);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long allocatedBytes(byte[] response, boolean streaming) throws Exception {
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        try {
+            if (streaming) {
+                parseStreaming(response);
+            } else {
+                parseJsonObject(response);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return Debug.getThreadAllocSize();
+    }
+
+    private static void parseStreaming(byte[] response) throws Exception {
+        ForecastJsonParser parser = new ForecastJsonParser(JULIAN_START_DAY);
+        parser.parse(new ByteArrayInputStream(response));
+    }
+
+    /**
+     * What the sync adapter did before: the whole body into a String, then a JSONObject tree.
+     */
+    private static void parseJsonObject(byte[] response) throws Exception {
+        InputStream inputStream = new ByteArrayInputStream(response);
+        StringBuffer buffer = new StringBuffer();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            buffer.append(line + "\n");
+        }
+        JSONObject forecastJson = new JSONObject(buffer.toString());
+        JSONArray weatherArray = forecastJson.getJSONArray("list");
+        WeatherBatch batch = new WeatherBatch(weatherArray.length());
+        for (int i = 0; i < weatherArray.length(); i++) {
+            JSONObject dayForecast = weatherArray.getJSONObject(i);
+            JSONObject weatherObject = dayForecast.getJSONArray("weather").getJSONObject(0);
+            JSONObject temperatureObject = dayForecast.getJSONObject("temp");
+            batch.add(0, i, weatherObject.getInt("id"), weatherObject.getString("main"),
+                    temperatureObject.getDouble("min"), temperatureObject.getDouble("max"),
+                    dayForecast.getInt("humidity"), dayForecast.getDouble("pressure"),
+                    dayForecast.getDouble("speed"), dayForecast.getDouble("deg"));
+        }
+    }
+
+    private static ForecastJsonParser parse(String response) throws Exception {
+        ForecastJsonParser parser = new ForecastJsonParser(JULIAN_START_DAY);
+        parser.parse(new ByteArrayInputStream(response.getBytes("UTF-8")));
+        return parser;
+    }
+
+    /**
+     * @param omit name of a field to leave out of the last day, null to leave nothing out
+     * @return a response laid out like the OpenWeatherMap daily forecast, one field per line
+     */
+    static String buildResponse(int days, String omit) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n\"city\":{\"id\":5375480,\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.08,\"lat\":37.39},\"country\":\"US\"},\n")
+                .append("\"cod\":\"200\",\n\"message\":0.0123,\n\"cnt\":").append(days)
+                .append(",\n\"list\":[\n");
+        for (int i = 0; i < days; i++) {
+            String skip = i == days - 1 ? omit : null;
+            if (i > 0) {
+                json.append(",\n");
+            }
+            json.append("{\"dt\":").append(1462000000L + i * 86400L).append(",\n");
+            json.append("\"temp\":{\"day\":18.2,");
+            appendField(json, "min", Double.toString(10.25 + i), skip);
+            appendField(json, "max", Double.toString(20.5 + i), skip);
+            json.append("\"night\":9.1},\n");
+            appendField(json, "pressure", "1013.5", skip);
+            appendField(json, "humidity", "71", skip);
+            json.append("\"weather\":[{");
+            appendField(json, "id", Integer.toString(800 + i % 5), skip);
+            appendField(json, "main", "\"Clear\"", skip);
+            json.append("\"description\":\"sky is clear\",\"icon\":\"01d\"}],\n");
+            appendField(json, "speed", "3.5", skip);
+            appendField(json, "deg", "270", skip);
+            json.append("\"clouds\":0}");
+        }
+        json.append("\n]}\n");
+        return json.toString();
+    }
+
+    private static void appendField(StringBuilder json, String name, String value,
+                                    String skip) {
+        if (!name.equals(skip)) {
+            json.append('"').append(name).append("\":").append(value).append(',');
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A local stand-in for the OpenWeatherMap forecast API, for {@link ForecastFetch} to download
+ * from in tests.
+ *
+ * Every request gets the response set last, after the set latency, each on its own thread so
+ * that concurrent fetches are served concurrently.  The headers of every request are recorded.
+ */
+class MockForecastServer {
+
+    private final ServerSocket mServerSocket;
+    // guarded by this
+    private final List<Map<String, String>> mRequests = new ArrayList<Map<String, String>>();
+    private int mStatus = 200;
+    private String mHeaders = "";
+    private String mBody = "";
+    private long mLatencyMillis;
+
+    MockForecastServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 64, InetAddress.getByName("127.0.0.1"));
+        new Thread("MockForecastServer") {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    final Socket socket;
+                    try {
+                        socket = mServerSocket.accept();
+                    } catch (IOException e) {
+                        // closed by shutdown()
+                        return;
+                    }
+                    new Thread("MockForecastServer connection") {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    }.start();
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * @return the base URL to hand to {@link ForecastFetch}
+     */
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/data/2.5/forecast/daily?";
+    }
+
+    /**
+     * @param headers extra response headers, each followed by "\r\n"
+     */
+    synchronized void setResponse(int status, String headers, String body) {
+        mStatus = status;
+        mHeaders = headers;
+        mBody = body;
+    }
+
+    /**
+     * @param latencyMillis how long every response is held back, like a round trip would
+     */
+    synchronized void setLatency(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return the headers of every request so far, with lower case names
+     */
+    synchronized List<Map<String, String>> getRequests() {
+        return new ArrayList<Map<String, String>>(mRequests);
+    }
+
+    void shutdown() throws IOException {
+        mServerSocket.close();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+            Map<String, String> headers = new HashMap<String, String>();
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                            line.substring(colon + 1).trim());
+                }
+            }
+            int status;
+            String extraHeaders;
+            String body;
+            long latencyMillis;
+            synchronized (this) {
+                mRequests.add(headers);
+                status = mStatus;
+                extraHeaders = mHeaders;
+                body = status == 304 ? "" : mBody;
+                latencyMillis = mLatencyMillis;
+            }
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            byte[] content = body.getBytes("UTF-8");
+            String head = "HTTP/1.1 " + status + " Status\r\n"
+                    + "Content-Type: application/json; charset=utf-8\r\n"
+                    + "Content-Length: " + content.length + "\r\n"
+                    + "Connection: close\r\n"
+                    + extraHeaders
+                    + "\r\n";
+            OutputStream out = socket.getOutputStream();
+            out.write(head.getBytes("ISO-8859-1"));
+            out.write(content);
+            out.flush();
+        } catch (IOException | InterruptedException e) {
+            // the client went away, nothing to answer
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
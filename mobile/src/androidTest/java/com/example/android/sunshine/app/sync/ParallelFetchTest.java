@@ -0,0 +1,97 @@
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks syncing 1, 10 and 50 locations against {@link MockForecastServer}, one after
+ * the other and on the sync adapter's bounded pool.
+ */
+public class ParallelFetchTest extends AndroidTestCase {
+
+    private static final String LOG_TAG = ParallelFetchTest.class.getSimpleName();
+
+    // Roughly one round trip to OpenWeatherMap on a phone
+    private static final long LATENCY_MILLIS = 100;
+
+    private MockForecastServer mServer;
+    private int mJulianStartDay;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new MockForecastServer();
+        mServer.setResponse(200, "", ForecastJsonParserTest.buildResponse(14, null));
+        mServer.setLatency(LATENCY_MILLIS);
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        mJulianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testFetchesEveryLocation() throws Exception {
+        List<ForecastFetch> fetches = createFetches(10);
+        List<ForecastFetch> finished = SunshineSyncAdapter.runFetches(fetches);
+        assertEquals(fetches, finished);
+        for (ForecastFetch fetch : finished) {
+            assertEquals(ForecastFetch.RESULT_OK, fetch.getResult());
+            assertEquals(14, fetch.getParser().getWeatherBatch().size());
+        }
+        assertEquals(10, mServer.getRequests().size());
+    }
+
+    public void testInterruptedSyncOnlyReturnsFinishedFetches() throws Exception {
+        mServer.setLatency(2000);
+        List<ForecastFetch> fetches = createFetches(10);
+        Thread.currentThread().interrupt();
+        List<ForecastFetch> finished;
+        try {
+            finished = SunshineSyncAdapter.runFetches(fetches);
+        } finally {
+            // clears the flag again
+            assertTrue(Thread.interrupted());
+        }
+        assertTrue(finished.size() < fetches.size());
+    }
+
+    public void testBenchmark() throws Exception {
+        for (int locations : new int[] {1, 10, 50}) {
+            long start = System.nanoTime();
+            for (ForecastFetch fetch : createFetches(locations)) {
+                fetch.call();
+            }
+            long serialMillis = (System.nanoTime() - start) / 1000000L;
+
+            List<ForecastFetch> fetches = createFetches(locations);
+            start = System.nanoTime();
+            List<ForecastFetch> finished = SunshineSyncAdapter.runFetches(fetches);
+            long parallelMillis = (System.nanoTime() - start) / 1000000L;
+            assertEquals(locations, finished.size());
+
+            Log.i(LOG_TAG, locations + " locations: " + serialMillis + "ms one after the other, "
+                    + parallelMillis + "ms in parallel");
+            if (locations > 1) {
+                assertTrue(locations + " locations: parallel " + parallelMillis
+                        + "ms, serial " + serialMillis + "ms", parallelMillis < serialMillis);
+            }
+        }
+    }
+
+    private List<ForecastFetch> createFetches(int count) {
+        List<ForecastFetch> fetches = new ArrayList<ForecastFetch>(count);
+        for (int i = 0; i < count; i++) {
+            fetches.add(new ForecastFetch(getContext(), mServer.getBaseUrl(),
+                    "sunshine-test-parallel-" + i, mJulianStartDay, new SyncTrace()));
+        }
+        return fetches;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks {@link SyncFanout#dispatch} returns right away and holds {@link SyncFanoutService}
+ * until its consumer has finished or timed out, and measures how long the sync thread is held
+ * by the consumers of a sync, dispatched and run in turn.
+ */
+public class SyncFanoutTest extends AndroidTestCase {
+
+    private static final String LOG_TAG = SyncFanoutTest.class.getSimpleName();
+
+    // Roughly what the consumers of a sync take on a phone: the widgets render, Muzei
+    // publishes, the notification downloads its large icon and the wear push only queues
+    private static final long[] CONSUMER_MILLIS = {150, 80, 1200, 20};
+
+    public void testHoldsTheProcessUntilConsumersFinish() throws Exception {
+        int holds = SyncFanoutService.getHoldCount();
+        final CountDownLatch finished = new CountDownLatch(3);
+        List<Future<?>> consumers = new ArrayList<Future<?>>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            consumers.add(SyncFanout.dispatch(getContext(), "consumer " + i, new Runnable() {
+                @Override
+                public void run() {
+                    sleep(300);
+                    finished.countDown();
+                }
+            }, 5000));
+        }
+        long dispatchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("dispatching took " + dispatchMillis + "ms", dispatchMillis < 100);
+        assertEquals(holds + 3, SyncFanoutService.getHoldCount());
+
+        for (Future<?> consumer : consumers) {
+            consumer.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0, finished.getCount());
+        assertHoldsReleased(holds);
+    }
+
+    public void testTimedOutConsumerReleasesItsHold() {
+        int holds = SyncFanoutService.getHoldCount();
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Future<?> consumer = SyncFanout.dispatch(getContext(), "hanging consumer",
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!sleep(60 * 1000)) {
+                            interrupted.countDown();
+                        }
+                    }
+                }, 300);
+
+        assertTrue("the consumer wasn't interrupted", awaitLatch(interrupted));
+        assertTrue(consumer.isCancelled());
+        assertHoldsReleased(holds);
+    }
+
+    /**
+     * Logs how long the sync thread is held by the consumers of a sync: run one after the other
+     * on it, dispatched and waited for, and dispatched only.
+     */
+    public void testSyncThreadHoldTime() throws Exception {
+        long serial = System.nanoTime();
+        for (long millis : CONSUMER_MILLIS) {
+            consumer(millis).run();
+        }
+        serial = System.nanoTime() - serial;
+
+        long awaited = System.nanoTime();
+        List<Future<?>> consumers = dispatchConsumers();
+        for (Future<?> consumer : consumers) {
+            consumer.get(10, TimeUnit.SECONDS);
+        }
+        awaited = System.nanoTime() - awaited;
+
+        long dispatched = System.nanoTime();
+        consumers = dispatchConsumers();
+        dispatched = System.nanoTime() - dispatched;
+        for (Future<?> consumer : consumers) {
+            consumer.get(10, TimeUnit.SECONDS);
+        }
+
+        Log.i(LOG_TAG, "Sync thread held by its consumers: in turn "
+                + TimeUnit.NANOSECONDS.toMillis(serial) + "ms, dispatched and awaited "
+                + TimeUnit.NANOSECONDS.toMillis(awaited) + "ms, dispatched "
+                + TimeUnit.NANOSECONDS.toMicros(dispatched) + "us");
+        assertTrue(dispatched < awaited && awaited < serial);
+    }
+
+    private List<Future<?>> dispatchConsumers() {
+        List<Future<?>> consumers = new ArrayList<Future<?>>();
+        for (long millis : CONSUMER_MILLIS) {
+            consumers.add(SyncFanout.dispatch(getContext(), millis + "ms consumer",
+                    consumer(millis), 10000));
+        }
+        return consumers;
+    }
+
+    private static Runnable consumer(final long millis) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                sleep(millis);
+            }
+        };
+    }
+
+    /**
+     * The hold goes once the consumer's future is done, which get() may see a little earlier.
+     */
+    private static void assertHoldsReleased(int holds) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (SyncFanoutService.getHoldCount() != holds && System.nanoTime() < deadline) {
+            sleep(10);
+        }
+        assertEquals(holds, SyncFanoutService.getHoldCount());
+    }
+
+    private static boolean awaitLatch(CountDownLatch latch) {
+        try {
+            return latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return false if interrupted
+     */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
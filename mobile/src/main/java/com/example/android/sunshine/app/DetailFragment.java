@@ -213,7 +213,8 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
             // Read date from cursor and update views for day of week and date
             long date = data.getLong(COL_WEATHER_DATE);
-            String dateText = Utility.getFullFriendlyDayString(getActivity(),date);
+            String dateText = SunshineSettings.get(getActivity()).getDayLabelFormatter()
+                    .getFullFriendlyDayString(date);
             mDateView.setText(dateText);
 
             // Get description from weather condition ID
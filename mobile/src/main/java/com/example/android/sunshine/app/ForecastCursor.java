@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A forecast list cursor that knows how it differs from the one loaded before it.
+ *
+ * {@link ForecastLoader} keys every row by its date and a hash of what the row shows, and the
+ * {@link ForecastDiff} to the previous load is worked out right here, on the loader thread.
+ * The adapter then only rebinds the rows that were inserted, removed or changed.
+ */
+public class ForecastCursor extends CursorWrapper {
+
+    private final ForecastRow[] mRows;
+
+    // Keys of the rows, in cursor order, which is by ascending date
+    private final long[] mDates;
+    private final int[] mHashes;
+
+    // The keys this cursor was compared with, the adapter must be showing those for the
+    // difference to apply
+    private final long[] mBaseDates;
+
+    private final ForecastDiff mDiff;
+
+    /**
+     * @param baseDates keys of the previous load, null if there was none
+     */
+    ForecastCursor(Cursor cursor, ForecastRow[] rows, long[] dates, int[] hashes,
+                   long[] baseDates, int[] baseHashes) {
+        super(cursor);
+        mRows = rows;
+        mDates = dates;
+        mHashes = hashes;
+        mBaseDates = baseDates;
+        mDiff = new ForecastDiff(baseDates, baseHashes, dates, hashes);
+    }
+
+    /**
+     * @return true if this cursor was compared with the given one, so that
+     * {@link #dispatchUpdatesTo} turns a list showing it into one showing this cursor.
+     */
+    public boolean isDiffedAgainst(Cursor previous) {
+        return previous instanceof ForecastCursor && mBaseDates != null
+                && mBaseDates == ((ForecastCursor) previous).mDates;
+    }
+
+    public void dispatchUpdatesTo(final RecyclerView.Adapter adapter) {
+        mDiff.dispatchUpdatesTo(new ForecastDiff.Listener() {
+            @Override
+            public void onRemoved(int position) {
+                adapter.notifyItemRemoved(position);
+            }
+
+            @Override
+            public void onInserted(int position) {
+                adapter.notifyItemInserted(position);
+            }
+
+            @Override
+            public void onChanged(int position) {
+                adapter.notifyItemChanged(position);
+            }
+        });
+    }
+
+    /**
+     * @return how many rows {@link #dispatchUpdatesTo} will have bound again.
+     */
+    public int getUpdateCount() {
+        return mDiff.getUpdateCount();
+    }
+
+    /**
+     * @return the row at the position, already formatted for display
+     */
+    ForecastRow getRow(int position) {
+        return mRows[position];
+    }
+
+    long[] getDates() {
+        return mDates;
+    }
+
+    int[] getHashes() {
+        return mHashes;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+/**
+ * The difference between two forecast lists, each row keyed by its date and a hash of what it
+ * shows, both sorted by ascending date.  Used by {@link ForecastCursor}.
+ */
+final class ForecastDiff {
+
+    /**
+     * Gets the updates that turn a list showing the old rows into one showing the new rows.
+     */
+    interface Listener {
+        void onRemoved(int position);
+
+        void onInserted(int position);
+
+        void onChanged(int position);
+    }
+
+    // Old positions of removed rows, new positions of inserted and changed ones, ascending
+    private final int[] mRemoved;
+    private final int[] mInserted;
+    private final int[] mChanged;
+    private int mRemovedCount;
+    private int mInsertedCount;
+    private int mChangedCount;
+
+    /**
+     * @param baseDates keys of the old rows, null if there were none
+     */
+    ForecastDiff(long[] baseDates, int[] baseHashes, long[] dates, int[] hashes) {
+        int oldCount = baseDates != null ? baseDates.length : 0;
+        int newCount = dates.length;
+        mRemoved = new int[oldCount];
+        mInserted = new int[newCount];
+        mChanged = new int[newCount];
+
+        // Both lists are sorted by date, so one walk over them finds every difference
+        int i = 0;
+        int j = 0;
+        while (i < oldCount || j < newCount) {
+            if (j == newCount || (i < oldCount && baseDates[i] < dates[j])) {
+                mRemoved[mRemovedCount++] = i++;
+            } else if (i == oldCount || baseDates[i] > dates[j]) {
+                mInserted[mInsertedCount++] = j++;
+            } else {
+                // A row that moved is bound again too: the first row has its own layout, and
+                // the icon's transition name has the position in it
+                if (baseHashes[i] != hashes[j] || i != j) {
+                    mChanged[mChangedCount++] = j;
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    void dispatchUpdatesTo(Listener listener) {
+        // Removals from the end first, so the positions of the ones left to remove stay valid.
+        // Once they are gone, inserting in ascending order puts every row at its new position.
+        for (int k = mRemovedCount - 1; k >= 0; k--) {
+            listener.onRemoved(mRemoved[k]);
+        }
+        for (int k = 0; k < mInsertedCount; k++) {
+            listener.onInserted(mInserted[k]);
+        }
+        for (int k = 0; k < mChangedCount; k++) {
+            listener.onChanged(mChanged[k]);
+        }
+    }
+
+    /**
+     * @return how many rows {@link #dispatchUpdatesTo} has bound again.
+     */
+    int getUpdateCount() {
+        return mInsertedCount + mChangedCount;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+import android.text.format.Time;
+
+/**
+ * Loads the forecast list, with the columns of {@link ForecastFragment}, as a
+ * {@link ForecastCursor} that knows which rows differ from the previous load.
+ */
+public class ForecastLoader extends CursorLoader {
+
+    private final Object mLock = new Object();
+    // guarded by mLock
+    private long[] mLastDates;
+    private int[] mLastHashes;
+
+    public ForecastLoader(Context context, Uri uri, String[] projection, String selection,
+                          String[] selectionArgs, String sortOrder) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+
+        // What every row looks like also depends on the units, the art pack and, for the day
+        // names, on what day it is
+        SunshineSettings settings = SunshineSettings.get(getContext());
+        int displayHash = getDisplayHash(settings);
+        int count = cursor.getCount();
+        long[] dates = new long[count];
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            cursor.moveToPosition(i);
+            dates[i] = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+            int hash = displayHash;
+            hash = 31 * hash + cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+            hash = 31 * hash + hashDouble(cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+            hash = 31 * hash + hashDouble(cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+            hashes[i] = hash;
+        }
+        // Formatted here once, rather than every time a row scrolls into view
+        ForecastRow[] rows = ForecastRow.createAll(getContext(), settings, cursor);
+
+        synchronized (mLock) {
+            ForecastCursor forecastCursor =
+                    new ForecastCursor(cursor, rows, dates, hashes, mLastDates, mLastHashes);
+            mLastDates = dates;
+            mLastHashes = hashes;
+            return forecastCursor;
+        }
+    }
+
+    private static int getDisplayHash(SunshineSettings settings) {
+        Time time = new Time();
+        time.setToNow();
+        int today = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        int hash = settings.isMetric() ? 1 : 0;
+        hash = 31 * hash + settings.getArtPack().hashCode();
+        hash = 31 * hash + today;
+        return hash;
+    }
+
+    private static int hashDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
+    }
+}
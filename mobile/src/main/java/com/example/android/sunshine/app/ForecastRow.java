@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.shared.DayLabelFormatter;
+
+/**
+ * Everything one row of the forecast list shows, formatted ahead of time.
+ *
+ * {@link ForecastLoader} builds these on the loader thread, so binding a row only has to hand
+ * the strings to its views.
+ */
+final class ForecastRow {
+    final long date;
+    // The row at the top of the list uses the today layout, the others the future day one
+    final String dayText;
+    final String longDayText;
+    final String description;
+    final String descriptionContentDescription;
+    final String highText;
+    final String highContentDescription;
+    final String lowText;
+    final String lowContentDescription;
+    // Large art for the today layout, small icon for the future day one
+    final int artResourceId;
+    final int iconResourceId;
+    // Null when the local graphics are used
+    final String artUrl;
+
+    private ForecastRow(Context context, SunshineSettings settings, Cursor cursor) {
+        date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+
+        DayLabelFormatter dayLabels = settings.getDayLabelFormatter();
+        dayText = dayLabels.getDayLabel(date, false);
+        // Only differs for today
+        longDayText = cursor.getPosition() == 0 ? dayLabels.getDayLabel(date, true) : dayText;
+
+        description = Utility.getStringForWeatherCondition(context, weatherId);
+        descriptionContentDescription = context.getString(R.string.a11y_forecast, description);
+
+        highText = settings.formatTemperature(
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+        highContentDescription = context.getString(R.string.a11y_high_temp, highText);
+        lowText = settings.formatTemperature(
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+        lowContentDescription = context.getString(R.string.a11y_low_temp, lowText);
+
+        artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+        iconResourceId = Utility.getIconResourceForWeatherCondition(weatherId);
+        artUrl = settings.usingLocalGraphics()
+                ? null : Utility.getArtUrlForWeatherCondition(settings, weatherId);
+    }
+
+    /**
+     * Formats the row the cursor is on.
+     */
+    static ForecastRow create(Context context, Cursor cursor) {
+        return new ForecastRow(context, SunshineSettings.get(context), cursor);
+    }
+
+    /**
+     * Formats every row of the cursor with the same settings.
+     */
+    static ForecastRow[] createAll(Context context, SunshineSettings settings, Cursor cursor) {
+        ForecastRow[] rows = new ForecastRow[cursor.getCount()];
+        for (int i = 0; i < rows.length; i++) {
+            cursor.moveToPosition(i);
+            rows[i] = new ForecastRow(context, settings, cursor);
+        }
+        cursor.moveToPosition(-1);
+        return rows;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.shared.DayLabelFormatter;
+import com.example.android.sunshine.shared.TemperatureFormatter;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.util.Locale;
+
+/**
+ * The user's settings, read once.
+ *
+ * {@link #get} hands out the current snapshot, which never changes.  When one of the settings
+ * in it is changed, a new snapshot replaces it, so the rows, widgets and notifications
+ * formatting many values in a row neither go to the SharedPreferences nor look up the keys
+ * for every one of them.
+ */
+public final class SunshineSettings {
+
+    // What the temperature format starts with when TemperatureFormatter can stand in for it
+    private static final String TEMPERATURE_NUMBER_FORMAT = "%1.0f";
+
+    private static final Object sLock = new Object();
+    private static volatile SunshineSettings sCurrent;
+    // SharedPreferences only holds on to its listeners weakly
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    private final Locale mLocale;
+    private final String mPreferredLocation;
+    private final boolean mMetric;
+    private final String mArtPack;
+    private final boolean mLocalGraphics;
+    private final String mTemperatureFormat;
+    // Null if the temperature format is not a number followed by plain text
+    private final TemperatureFormatter mTemperatureFormatter;
+    private final DayLabelFormatter mDayLabelFormatter;
+    // URLs of this art pack's art, by category, formatted the first time each is needed
+    private final String[] mArtUrls = new String[WeatherConditions.CATEGORY_COUNT];
+
+    private SunshineSettings(Context context, SharedPreferences prefs) {
+        mLocale = Locale.getDefault();
+        mPreferredLocation = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+        String metric = context.getString(R.string.pref_units_metric);
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key), metric)
+                .equals(metric);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        mArtPack = prefs.getString(context.getString(R.string.pref_art_pack_key), sunshineArtPack);
+        mLocalGraphics = mArtPack.equals(sunshineArtPack);
+        mTemperatureFormat = context.getString(R.string.format_temperature);
+        String temperatureSuffix = mTemperatureFormat.startsWith(TEMPERATURE_NUMBER_FORMAT)
+                ? mTemperatureFormat.substring(TEMPERATURE_NUMBER_FORMAT.length()) : null;
+        mTemperatureFormatter = temperatureSuffix != null && temperatureSuffix.indexOf('%') == -1
+                ? new TemperatureFormatter(mLocale, !mMetric, temperatureSuffix) : null;
+        mDayLabelFormatter = new DayLabelFormatter(mLocale, context.getString(R.string.today),
+                context.getString(R.string.tomorrow),
+                context.getString(R.string.format_full_friendly_date));
+    }
+
+    /**
+     * @return the settings as they are now, safe to keep for as long as one update takes.
+     */
+    public static SunshineSettings get(Context context) {
+        SunshineSettings settings = sCurrent;
+        // The temperature format is a resource, it changes with the language
+        if (settings != null && settings.mLocale.equals(Locale.getDefault())) {
+            return settings;
+        }
+        synchronized (sLock) {
+            final Context appContext = context.getApplicationContext();
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+            if (sListener == null) {
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                          String key) {
+                        if (key.equals(appContext.getString(R.string.pref_location_key))
+                                || key.equals(appContext.getString(R.string.pref_units_key))
+                                || key.equals(appContext.getString(R.string.pref_art_pack_key))) {
+                            refresh(appContext, sharedPreferences);
+                        }
+                    }
+                };
+                prefs.registerOnSharedPreferenceChangeListener(sListener);
+            }
+            return refresh(appContext, prefs);
+        }
+    }
+
+    private static SunshineSettings refresh(Context context, SharedPreferences prefs) {
+        synchronized (sLock) {
+            sCurrent = new SunshineSettings(context, prefs);
+            return sCurrent;
+        }
+    }
+
+    public String getPreferredLocation() {
+        return mPreferredLocation;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * @return true if Sunshine is using local graphics, false otherwise.
+     */
+    public boolean usingLocalGraphics() {
+        return mLocalGraphics;
+    }
+
+    /**
+     * @return the URL format of the art pack, with a %s for the name of the art.
+     */
+    public String getArtPack() {
+        return mArtPack;
+    }
+
+    /**
+     * @param category one of the {@link WeatherConditions} categories
+     * @return url of the category's art in the art pack. null if it has none.
+     */
+    public String getArtUrl(int category) {
+        String artName = WeatherConditions.getArtName(category);
+        if (artName == null) {
+            return null;
+        }
+        String url = mArtUrls[category];
+        if (url == null) {
+            // Threads racing here format the same string, either one may be kept
+            url = String.format(Locale.US, mArtPack, artName);
+            mArtUrls[category] = url;
+        }
+        return url;
+    }
+
+    /**
+     * @param temperature in degrees Celsius, as it is stored
+     */
+    public String formatTemperature(double temperature) {
+        if (mTemperatureFormatter != null) {
+            return mTemperatureFormatter.format(temperature);
+        }
+        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
+        // the values here.
+        if (!mMetric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+
+        // For presentation, assume the user doesn't care about tenths of a degree.
+        return String.format(mTemperatureFormat, temperature);
+    }
+
+    /**
+     * Like {@link #formatTemperature}, without allocating when the builder has room.
+     *
+     * @return out, for chaining
+     */
+    public StringBuilder appendTemperature(StringBuilder out, double temperature) {
+        if (mTemperatureFormatter != null) {
+            return mTemperatureFormatter.append(out, temperature);
+        }
+        return out.append(formatTemperature(temperature));
+    }
+
+    /**
+     * @return the labels of the forecast's days in the language of these settings
+     */
+    public DayLabelFormatter getDayLabelFormatter() {
+        return mDayLabelFormatter;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+
+/**
+ * The forecast of one location from one day on, copied out of the database into primitive
+ * arrays.  A snapshot never changes once built, so it can be shared between threads freely.
+ *
+ * Snapshots are handed out by {@link ForecastSnapshotCache}.
+ */
+public final class ForecastSnapshot {
+
+    static final String[] COLUMNS = {
+            WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_WEATHER_ID = 2;
+    private static final int INDEX_SHORT_DESC = 3;
+    private static final int INDEX_MAX_TEMP = 4;
+    private static final int INDEX_MIN_TEMP = 5;
+
+    private final String mLocationSetting;
+    private final long mStartDate;
+    private final long[] mId;
+    private final long[] mDate;
+    private final int[] mWeatherId;
+    private final String[] mShortDesc;
+    private final double[] mMaxTemp;
+    private final double[] mMinTemp;
+
+    /**
+     * Copies every row of a cursor over {@link #COLUMNS}.  The cursor is not closed.
+     */
+    ForecastSnapshot(String locationSetting, long startDate, Cursor cursor) {
+        mLocationSetting = locationSetting;
+        mStartDate = startDate;
+        int count = cursor.getCount();
+        mId = new long[count];
+        mDate = new long[count];
+        mWeatherId = new int[count];
+        mShortDesc = new String[count];
+        mMaxTemp = new double[count];
+        mMinTemp = new double[count];
+        int i = 0;
+        cursor.moveToPosition(-1);
+        while (i < count && cursor.moveToNext()) {
+            mId[i] = cursor.getLong(INDEX_ID);
+            mDate[i] = cursor.getLong(INDEX_DATE);
+            mWeatherId[i] = cursor.getInt(INDEX_WEATHER_ID);
+            mShortDesc[i] = cursor.getString(INDEX_SHORT_DESC);
+            mMaxTemp[i] = cursor.getDouble(INDEX_MAX_TEMP);
+            mMinTemp[i] = cursor.getDouble(INDEX_MIN_TEMP);
+            i++;
+        }
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    /**
+     * @return the normalized date the snapshot starts at, rows may start later if today's
+     * forecast is missing.
+     */
+    public long getStartDate() {
+        return mStartDate;
+    }
+
+    public int size() {
+        return mId.length;
+    }
+
+    public long getId(int i) {
+        return mId[i];
+    }
+
+    public long getDate(int i) {
+        return mDate[i];
+    }
+
+    public int getWeatherId(int i) {
+        return mWeatherId[i];
+    }
+
+    public String getShortDesc(int i) {
+        return mShortDesc[i];
+    }
+
+    public double getMaxTemp(int i) {
+        return mMaxTemp[i];
+    }
+
+    public double getMinTemp(int i) {
+        return mMinTemp[i];
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process wide cache of {@link ForecastSnapshot}s, keyed by location setting and start day.
+ *
+ * After a sync the widgets, Muzei, the notification and the wearable all want the forecast of
+ * the preferred location from today on.  The first of them to ask runs the query, everybody
+ * after that gets the same snapshot without touching SQLite.  {@link WeatherProvider} drops the
+ * whole cache whenever it notifies a change, so a snapshot is never older than the data.
+ * Snapshots starting before today are dropped when the next one is added, nobody asks for
+ * them once the day has changed.
+ */
+public final class ForecastSnapshotCache {
+
+    private static final Map<String, ForecastSnapshot> sSnapshots =
+            new HashMap<String, ForecastSnapshot>();
+    // Bumped by every invalidation, so a query that raced with a write isn't cached
+    private static int sGeneration;
+
+    private static final AtomicInteger sHits = new AtomicInteger();
+    private static final AtomicInteger sMisses = new AtomicInteger();
+
+    private ForecastSnapshotCache() {
+    }
+
+    /**
+     * @param startDate any time on the first day wanted, it is normalized like the provider does
+     * @return the forecast of the location from that day on, null if the query failed.
+     */
+    public static ForecastSnapshot get(Context context, String locationSetting, long startDate) {
+        long normalizedDate = WeatherContract.normalizeDate(startDate);
+        String key = locationSetting + '/' + normalizedDate;
+        int generation;
+        synchronized (sSnapshots) {
+            ForecastSnapshot snapshot = sSnapshots.get(key);
+            if (snapshot != null) {
+                sHits.incrementAndGet();
+                return snapshot;
+            }
+            generation = sGeneration;
+        }
+        sMisses.incrementAndGet();
+
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, normalizedDate),
+                ForecastSnapshot.COLUMNS,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+        ForecastSnapshot snapshot;
+        try {
+            snapshot = new ForecastSnapshot(locationSetting, normalizedDate, cursor);
+        } finally {
+            cursor.close();
+        }
+
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        synchronized (sSnapshots) {
+            if (generation == sGeneration) {
+                Iterator<ForecastSnapshot> snapshots = sSnapshots.values().iterator();
+                while (snapshots.hasNext()) {
+                    if (snapshots.next().getStartDate() < today) {
+                        snapshots.remove();
+                    }
+                }
+                sSnapshots.put(key, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops every snapshot.  Called by the provider whenever weather or location rows change.
+     */
+    static void invalidate() {
+        synchronized (sSnapshots) {
+            sGeneration++;
+            sSnapshots.clear();
+        }
+    }
+
+    public static int getHitCount() {
+        return sHits.get();
+    }
+
+    public static int getMissCount() {
+        return sMisses.get();
+    }
+}
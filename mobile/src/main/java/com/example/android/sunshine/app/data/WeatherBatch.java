@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.os.Bundle;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+
+/**
+ * A batch of weather rows held column by column in primitive arrays.
+ *
+ * This is what the bulk write path of {@link WeatherProvider} consumes: rows are appended
+ * without boxing a single value, handed to the provider in a {@link Bundle} through
+ * {@link WeatherContract#METHOD_BULK_INSERT_WEATHER} and bound straight into compiled
+ * statements by {@link WeatherBatchWriter}.
+ */
+public class WeatherBatch {
+
+    // Bundle keys, one array per column
+    private static final String KEY_LOCATION_ID = "location_id";
+    private static final String KEY_DATE = "date";
+    private static final String KEY_WEATHER_ID = "weather_id";
+    private static final String KEY_SHORT_DESC = "short_desc";
+    private static final String KEY_MIN_TEMP = "min";
+    private static final String KEY_MAX_TEMP = "max";
+    private static final String KEY_HUMIDITY = "humidity";
+    private static final String KEY_PRESSURE = "pressure";
+    private static final String KEY_WIND_SPEED = "wind";
+    private static final String KEY_DEGREES = "degrees";
+
+    private int mSize;
+    private long[] mLocationId;
+    private long[] mDate;
+    private int[] mWeatherId;
+    private String[] mShortDesc;
+    private double[] mMinTemp;
+    private double[] mMaxTemp;
+    private double[] mHumidity;
+    private double[] mPressure;
+    private double[] mWindSpeed;
+    private double[] mDegrees;
+
+    public WeatherBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        mLocationId = new long[capacity];
+        mDate = new long[capacity];
+        mWeatherId = new int[capacity];
+        mShortDesc = new String[capacity];
+        mMinTemp = new double[capacity];
+        mMaxTemp = new double[capacity];
+        mHumidity = new double[capacity];
+        mPressure = new double[capacity];
+        mWindSpeed = new double[capacity];
+        mDegrees = new double[capacity];
+    }
+
+    /**
+     * Appends a row.  The date is expected to be normalized already (see
+     * {@link WeatherContract#normalizeDate(long)}), the writer normalizes it again anyway.
+     */
+    public void add(long locationId, long date, int weatherId, String shortDesc,
+                    double minTemp, double maxTemp, double humidity, double pressure,
+                    double windSpeed, double degrees) {
+        if (mSize == mDate.length) {
+            grow();
+        }
+        mLocationId[mSize] = locationId;
+        mDate[mSize] = date;
+        mWeatherId[mSize] = weatherId;
+        mShortDesc[mSize] = shortDesc;
+        mMinTemp[mSize] = minTemp;
+        mMaxTemp[mSize] = maxTemp;
+        mHumidity[mSize] = humidity;
+        mPressure[mSize] = pressure;
+        mWindSpeed[mSize] = windSpeed;
+        mDegrees[mSize] = degrees;
+        mSize++;
+    }
+
+    /**
+     * Appends every row of another batch.
+     */
+    public void addAll(WeatherBatch other) {
+        for (int i = 0; i < other.mSize; i++) {
+            add(other.mLocationId[i], other.mDate[i], other.mWeatherId[i], other.mShortDesc[i],
+                    other.mMinTemp[i], other.mMaxTemp[i], other.mHumidity[i], other.mPressure[i],
+                    other.mWindSpeed[i], other.mDegrees[i]);
+        }
+    }
+
+    /**
+     * Appends a row given as ContentValues.
+     *
+     * @return false, without adding anything, if the values don't hold every weather column.
+     */
+    public boolean add(ContentValues values) {
+        Long locationId = values.getAsLong(WeatherEntry.COLUMN_LOC_KEY);
+        Long date = values.getAsLong(WeatherEntry.COLUMN_DATE);
+        Integer weatherId = values.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID);
+        String shortDesc = values.getAsString(WeatherEntry.COLUMN_SHORT_DESC);
+        Double minTemp = values.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP);
+        Double maxTemp = values.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP);
+        Double humidity = values.getAsDouble(WeatherEntry.COLUMN_HUMIDITY);
+        Double pressure = values.getAsDouble(WeatherEntry.COLUMN_PRESSURE);
+        Double windSpeed = values.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED);
+        Double degrees = values.getAsDouble(WeatherEntry.COLUMN_DEGREES);
+        if (locationId == null || date == null || weatherId == null || shortDesc == null
+                || minTemp == null || maxTemp == null || humidity == null || pressure == null
+                || windSpeed == null || degrees == null) {
+            return false;
+        }
+        add(locationId, date, weatherId, shortDesc, minTemp, maxTemp, humidity, pressure,
+                windSpeed, degrees);
+        return true;
+    }
+
+    /**
+     * Sets the location of every row from index start on.  Parsers only learn which location
+     * a response is for once they're done with it.
+     */
+    public void setLocationId(int start, long locationId) {
+        Arrays.fill(mLocationId, start, mSize, locationId);
+    }
+
+    private void grow() {
+        int capacity = mDate.length * 2;
+        mLocationId = Arrays.copyOf(mLocationId, capacity);
+        mDate = Arrays.copyOf(mDate, capacity);
+        mWeatherId = Arrays.copyOf(mWeatherId, capacity);
+        mShortDesc = Arrays.copyOf(mShortDesc, capacity);
+        mMinTemp = Arrays.copyOf(mMinTemp, capacity);
+        mMaxTemp = Arrays.copyOf(mMaxTemp, capacity);
+        mHumidity = Arrays.copyOf(mHumidity, capacity);
+        mPressure = Arrays.copyOf(mPressure, capacity);
+        mWindSpeed = Arrays.copyOf(mWindSpeed, capacity);
+        mDegrees = Arrays.copyOf(mDegrees, capacity);
+    }
+
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putLongArray(KEY_LOCATION_ID, Arrays.copyOf(mLocationId, mSize));
+        bundle.putLongArray(KEY_DATE, Arrays.copyOf(mDate, mSize));
+        bundle.putIntArray(KEY_WEATHER_ID, Arrays.copyOf(mWeatherId, mSize));
+        bundle.putStringArray(KEY_SHORT_DESC, Arrays.copyOf(mShortDesc, mSize));
+        bundle.putDoubleArray(KEY_MIN_TEMP, Arrays.copyOf(mMinTemp, mSize));
+        bundle.putDoubleArray(KEY_MAX_TEMP, Arrays.copyOf(mMaxTemp, mSize));
+        bundle.putDoubleArray(KEY_HUMIDITY, Arrays.copyOf(mHumidity, mSize));
+        bundle.putDoubleArray(KEY_PRESSURE, Arrays.copyOf(mPressure, mSize));
+        bundle.putDoubleArray(KEY_WIND_SPEED, Arrays.copyOf(mWindSpeed, mSize));
+        bundle.putDoubleArray(KEY_DEGREES, Arrays.copyOf(mDegrees, mSize));
+        return bundle;
+    }
+
+    /**
+     * @return the batch stored in the bundle by {@link #toBundle()}, null if the bundle doesn't
+     * hold a complete batch.
+     */
+    public static WeatherBatch fromBundle(Bundle bundle) {
+        if (bundle == null) {
+            return null;
+        }
+        long[] date = bundle.getLongArray(KEY_DATE);
+        if (date == null) {
+            return null;
+        }
+        WeatherBatch batch = new WeatherBatch(0);
+        batch.mLocationId = bundle.getLongArray(KEY_LOCATION_ID);
+        batch.mDate = date;
+        batch.mWeatherId = bundle.getIntArray(KEY_WEATHER_ID);
+        batch.mShortDesc = bundle.getStringArray(KEY_SHORT_DESC);
+        batch.mMinTemp = bundle.getDoubleArray(KEY_MIN_TEMP);
+        batch.mMaxTemp = bundle.getDoubleArray(KEY_MAX_TEMP);
+        batch.mHumidity = bundle.getDoubleArray(KEY_HUMIDITY);
+        batch.mPressure = bundle.getDoubleArray(KEY_PRESSURE);
+        batch.mWindSpeed = bundle.getDoubleArray(KEY_WIND_SPEED);
+        batch.mDegrees = bundle.getDoubleArray(KEY_DEGREES);
+        if (batch.mLocationId == null || batch.mWeatherId == null || batch.mShortDesc == null
+                || batch.mMinTemp == null || batch.mMaxTemp == null || batch.mHumidity == null
+                || batch.mPressure == null || batch.mWindSpeed == null || batch.mDegrees == null) {
+            return null;
+        }
+        int size = date.length;
+        if (batch.mLocationId.length != size || batch.mWeatherId.length != size
+                || batch.mShortDesc.length != size || batch.mMinTemp.length != size
+                || batch.mMaxTemp.length != size || batch.mHumidity.length != size
+                || batch.mPressure.length != size || batch.mWindSpeed.length != size
+                || batch.mDegrees.length != size) {
+            return null;
+        }
+        batch.mSize = size;
+        return batch;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getLocationId(int i) {
+        return mLocationId[i];
+    }
+
+    public long getDate(int i) {
+        return mDate[i];
+    }
+
+    public int getWeatherId(int i) {
+        return mWeatherId[i];
+    }
+
+    public String getShortDesc(int i) {
+        return mShortDesc[i];
+    }
+
+    public double getMinTemp(int i) {
+        return mMinTemp[i];
+    }
+
+    public double getMaxTemp(int i) {
+        return mMaxTemp[i];
+    }
+
+    public double getHumidity(int i) {
+        return mHumidity[i];
+    }
+
+    public double getPressure(int i) {
+        return mPressure[i];
+    }
+
+    public double getWindSpeed(int i) {
+        return mWindSpeed[i];
+    }
+
+    public double getDegrees(int i) {
+        return mDegrees[i];
+    }
+}
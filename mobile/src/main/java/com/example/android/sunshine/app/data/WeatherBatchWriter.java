@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Writes a {@link WeatherBatch} into the weather table through three statements compiled
+ * once per batch, binding every column as a primitive.
+ *
+ * Rows are upserted: a row identical to the stored one for the same location and day is
+ * skipped, a changed one is updated in place (so it keeps its _id) and only days we don't have
+ * yet are inserted.  The caller owns the transaction.
+ */
+class WeatherBatchWriter {
+
+    //SELECT COUNT(*) FROM weather WHERE location_id = ? AND date = ? AND short_desc = ? AND ...
+    private static final String SQL_COUNT_UNCHANGED = "SELECT COUNT(*) FROM " + WeatherEntry.TABLE_NAME +
+            " WHERE " + WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+            WeatherEntry.COLUMN_DATE + " = ? AND " +
+            WeatherEntry.COLUMN_SHORT_DESC + " = ? AND " +
+            WeatherEntry.COLUMN_WEATHER_ID + " = ? AND " +
+            WeatherEntry.COLUMN_MIN_TEMP + " = ? AND " +
+            WeatherEntry.COLUMN_MAX_TEMP + " = ? AND " +
+            WeatherEntry.COLUMN_HUMIDITY + " = ? AND " +
+            WeatherEntry.COLUMN_PRESSURE + " = ? AND " +
+            WeatherEntry.COLUMN_WIND_SPEED + " = ? AND " +
+            WeatherEntry.COLUMN_DEGREES + " = ?";
+
+    private static final String SQL_UPDATE = "UPDATE " + WeatherEntry.TABLE_NAME + " SET " +
+            WeatherEntry.COLUMN_SHORT_DESC + " = ?, " +
+            WeatherEntry.COLUMN_WEATHER_ID + " = ?, " +
+            WeatherEntry.COLUMN_MIN_TEMP + " = ?, " +
+            WeatherEntry.COLUMN_MAX_TEMP + " = ?, " +
+            WeatherEntry.COLUMN_HUMIDITY + " = ?, " +
+            WeatherEntry.COLUMN_PRESSURE + " = ?, " +
+            WeatherEntry.COLUMN_WIND_SPEED + " = ?, " +
+            WeatherEntry.COLUMN_DEGREES + " = ?" +
+            " WHERE " + WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+            WeatherEntry.COLUMN_DATE + " = ?";
+
+    private static final String SQL_INSERT = "INSERT INTO " + WeatherEntry.TABLE_NAME + " (" +
+            WeatherEntry.COLUMN_LOC_KEY + ", " +
+            WeatherEntry.COLUMN_DATE + ", " +
+            WeatherEntry.COLUMN_SHORT_DESC + ", " +
+            WeatherEntry.COLUMN_WEATHER_ID + ", " +
+            WeatherEntry.COLUMN_MIN_TEMP + ", " +
+            WeatherEntry.COLUMN_MAX_TEMP + ", " +
+            WeatherEntry.COLUMN_HUMIDITY + ", " +
+            WeatherEntry.COLUMN_PRESSURE + ", " +
+            WeatherEntry.COLUMN_WIND_SPEED + ", " +
+            WeatherEntry.COLUMN_DEGREES +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final SQLiteStatement mCountUnchanged;
+    private final SQLiteStatement mUpdate;
+    private final SQLiteStatement mInsert;
+    private final Time mTime = new Time();
+
+    WeatherBatchWriter(SQLiteDatabase db) {
+        mCountUnchanged = db.compileStatement(SQL_COUNT_UNCHANGED);
+        mUpdate = db.compileStatement(SQL_UPDATE);
+        mInsert = db.compileStatement(SQL_INSERT);
+    }
+
+    /**
+     * @return the number of rows actually written, skipped rows don't count.
+     */
+    int write(WeatherBatch batch) {
+        int returnCount = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            long locationId = batch.getLocationId(i);
+            long date = normalizeDate(batch.getDate(i));
+            String shortDesc = batch.getShortDesc(i);
+            int weatherId = batch.getWeatherId(i);
+            double minTemp = batch.getMinTemp(i);
+            double maxTemp = batch.getMaxTemp(i);
+            double humidity = batch.getHumidity(i);
+            double pressure = batch.getPressure(i);
+            double windSpeed = batch.getWindSpeed(i);
+            double degrees = batch.getDegrees(i);
+
+            mCountUnchanged.bindLong(1, locationId);
+            mCountUnchanged.bindLong(2, date);
+            mCountUnchanged.bindString(3, shortDesc);
+            mCountUnchanged.bindLong(4, weatherId);
+            mCountUnchanged.bindDouble(5, minTemp);
+            mCountUnchanged.bindDouble(6, maxTemp);
+            mCountUnchanged.bindDouble(7, humidity);
+            mCountUnchanged.bindDouble(8, pressure);
+            mCountUnchanged.bindDouble(9, windSpeed);
+            mCountUnchanged.bindDouble(10, degrees);
+            if (mCountUnchanged.simpleQueryForLong() > 0) {
+                continue;
+            }
+
+            mUpdate.bindString(1, shortDesc);
+            mUpdate.bindLong(2, weatherId);
+            mUpdate.bindDouble(3, minTemp);
+            mUpdate.bindDouble(4, maxTemp);
+            mUpdate.bindDouble(5, humidity);
+            mUpdate.bindDouble(6, pressure);
+            mUpdate.bindDouble(7, windSpeed);
+            mUpdate.bindDouble(8, degrees);
+            mUpdate.bindLong(9, locationId);
+            mUpdate.bindLong(10, date);
+            int rowsUpdated = mUpdate.executeUpdateDelete();
+            if (rowsUpdated > 0) {
+                returnCount += rowsUpdated;
+                continue;
+            }
+
+            mInsert.bindLong(1, locationId);
+            mInsert.bindLong(2, date);
+            mInsert.bindString(3, shortDesc);
+            mInsert.bindLong(4, weatherId);
+            mInsert.bindDouble(5, minTemp);
+            mInsert.bindDouble(6, maxTemp);
+            mInsert.bindDouble(7, humidity);
+            mInsert.bindDouble(8, pressure);
+            mInsert.bindDouble(9, windSpeed);
+            mInsert.bindDouble(10, degrees);
+            if (mInsert.executeInsert() != -1) {
+                returnCount++;
+            }
+        }
+        return returnCount;
+    }
+
+    void close() {
+        mCountUnchanged.close();
+        mUpdate.close();
+        mInsert.close();
+    }
+
+    // Same as WeatherContract.normalizeDate, without a new Time for every row
+    private long normalizeDate(long date) {
+        mTime.set(date);
+        int julianDay = Time.getJulianDay(date, mTime.gmtoff);
+        return mTime.setJulianDay(julianDay);
+    }
+}
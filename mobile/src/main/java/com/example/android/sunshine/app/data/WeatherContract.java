@@ -44,6 +44,12 @@ public class WeatherContract {
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
 
+    // ContentProvider.call method storing a WeatherBatch passed in the extras, see
+    // WeatherBatch.toBundle().  The result holds the number of rows written under
+    // EXTRA_ROWS_WRITTEN.
+    public static final String METHOD_BULK_INSERT_WEATHER = "bulk_insert_weather";
+    public static final String EXTRA_ROWS_WRITTEN = "rows_written";
+
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
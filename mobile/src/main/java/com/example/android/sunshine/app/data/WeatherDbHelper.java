@@ -16,8 +16,11 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+import android.util.Log;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
@@ -27,13 +30,43 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
-    // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final String LOG_TAG = WeatherDbHelper.class.getSimpleName();
+
+    // If you change the database schema, you must increment the database version, and add a
+    // step to MIGRATIONS so existing forecasts survive the upgrade.
+    private static final int DATABASE_VERSION = 3;
 
     static final String DATABASE_NAME = "weather.db";
 
+    // Serves the weather/location join: once location_setting has been resolved through its
+    // UNIQUE index, the forecast of that location is read in date order straight off this
+    // index, so date >= ? is a range search and ORDER BY date needs no temporary sort.  The
+    // UNIQUE (date, location_id) index can't do that, date comes first in it.
+    static final String INDEX_WEATHER_LOCATION_DATE = "weather_location_date";
+
+    private static final String SQL_CREATE_WEATHER_LOCATION_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_WEATHER_LOCATION_DATE + " ON " +
+                    WeatherEntry.TABLE_NAME + " (" +
+                    WeatherEntry.COLUMN_LOC_KEY + ", " +
+                    WeatherEntry.COLUMN_DATE + ");";
+
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // The sync writes while the list, the widgets and Muzei read.  With write-ahead logging
+        // readers keep seeing the last committed forecast instead of waiting for the sync
+        // transaction to finish.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+        // In WAL mode NORMAL only syncs at checkpoints.  A power cut may lose the last sync, but
+        // never corrupts the database, and the data is a cache the next sync fetches again.
+        sqLiteDatabase.execSQL("PRAGMA synchronous = NORMAL");
+        // Checkpoint once the log passes about 1000 pages (the SQLite default) so a 14 day sync
+        // of several locations is checkpointed once rather than after every few rows.  This
+        // pragma returns the new value, so it has to be run as a query.
+        DatabaseUtils.longForQuery(sqLiteDatabase, "PRAGMA wal_autocheckpoint = 1000", null);
     }
 
     @Override
@@ -81,18 +114,69 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        // Note that this only fires if you change the version number for your database.
-        // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
+        if (oldVersion < OLDEST_MIGRATABLE_VERSION) {
+            // Nothing older than this can be migrated, and this database is only a cache for
+            // online data, so those are simply discarded and the next sync starts over
+            Log.d(LOG_TAG, "Recreating weather.db version " + oldVersion);
+            recreate(sqLiteDatabase);
+            return;
+        }
+
+        // SQLiteOpenHelper runs this inside a transaction, so either every step applies or the
+        // database stays at oldVersion
+        long startTime = SystemClock.elapsedRealtime();
+        for (Migration migration : MIGRATIONS) {
+            if (migration.toVersion > oldVersion && migration.toVersion <= newVersion) {
+                migration.migrate(sqLiteDatabase);
+            }
+        }
+        Log.d(LOG_TAG, "Migrated weather.db from version " + oldVersion + " to " + newVersion +
+                " in " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        // We can't know what a newer schema looked like, start over
+        recreate(sqLiteDatabase);
+    }
+
+    private void recreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
+
+    /**
+     * One schema change, taking a database from toVersion - 1 to toVersion without touching the
+     * rows it holds.
+     */
+    private static abstract class Migration {
+        final int toVersion;
+
+        Migration(int toVersion) {
+            this.toVersion = toVersion;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    // Databases older than this are rebuilt rather than migrated
+    private static final int OLDEST_MIGRATABLE_VERSION = 2;
+
+    // Every schema change after OLDEST_MIGRATABLE_VERSION, in order.  When you change the schema,
+    // change onCreate, increment DATABASE_VERSION and append the step that gets an existing
+    // database to the same place.
+    private static final Migration[] MIGRATIONS = {
+            new Migration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
+                }
+            },
+    };
 }
@@ -23,19 +23,30 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WeatherProvider extends ContentProvider {
 
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
+
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
 
+    // Every weather row written by the bulk paths and every change observers were told about,
+    // since the process started
+    private static final AtomicInteger sRowsWritten = new AtomicInteger();
+    private static final AtomicInteger sChangeNotifications = new AtomicInteger();
+
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
 
-    private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -52,18 +63,18 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
@@ -251,7 +262,7 @@ public class WeatherProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyObservers(uri);
         return returnUri;
     }
 
@@ -276,11 +287,32 @@ public class WeatherProvider extends ContentProvider {
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyObservers(uri);
         }
         return rowsDeleted;
     }
 
+    private void notifyObservers(Uri uri) {
+        ForecastSnapshotCache.invalidate();
+        sChangeNotifications.incrementAndGet();
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    /**
+     * @return how many weather rows the bulk writes have written.  Rows that were already stored
+     * as they are aren't counted.
+     */
+    public static int getRowsWrittenCount() {
+        return sRowsWritten.get();
+    }
+
+    /**
+     * @return how many times observers have been told the weather or the locations changed.
+     */
+    public static int getChangeNotificationCount() {
+        return sChangeNotifications.get();
+    }
+
     private void normalizeDate(ContentValues values) {
         // normalize the date value
         if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
@@ -310,38 +342,98 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyObservers(uri);
         }
         return rowsUpdated;
     }
 
+    /*
+        Rows are upserted rather than blindly inserted, see WeatherBatchWriter: only rows that
+        differ from the stored ones are written.  The return value is the number of rows
+        actually written, and observers are only notified when that number isn't 0.
+     */
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
-                db.beginTransaction();
+                db.beginTransactionNonExclusive();
                 int returnCount = 0;
                 try {
+                    WeatherBatch batch = new WeatherBatch(values.length);
                     for (ContentValues value : values) {
                         normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
+                        if (!batch.add(value)) {
+                            // Not a complete row, let the database decide what to make of it
+                            long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                            if (_id != -1) {
+                                returnCount++;
+                            }
                         }
                     }
+                    returnCount += writeWeatherBatch(db, batch);
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
+                Log.d(LOG_TAG, "bulkInsert: " + values.length + " rows received, "
+                        + returnCount + " written");
+                sRowsWritten.addAndGet(returnCount);
+                if (returnCount > 0) {
+                    notifyObservers(uri);
+                }
                 return returnCount;
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /*
+        The bulk write fast path: a WeatherBatch travels in the extras, nothing gets boxed into
+        ContentValues on the way to the compiled statements.  Same semantics as bulkInsert on
+        the weather URI.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_BULK_INSERT_WEATHER.equals(method)) {
+            WeatherBatch batch = WeatherBatch.fromBundle(extras);
+            if (batch == null) {
+                throw new IllegalArgumentException("No weather batch in the extras");
+            }
+            final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            int returnCount;
+            db.beginTransactionNonExclusive();
+            try {
+                returnCount = writeWeatherBatch(db, batch);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            Log.d(LOG_TAG, "call: " + batch.size() + " rows received, " + returnCount + " written");
+            sRowsWritten.addAndGet(returnCount);
+            if (returnCount > 0) {
+                notifyObservers(WeatherContract.WeatherEntry.CONTENT_URI);
+            }
+            Bundle result = new Bundle();
+            result.putInt(WeatherContract.EXTRA_ROWS_WRITTEN, returnCount);
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    private static int writeWeatherBatch(SQLiteDatabase db, WeatherBatch batch) {
+        if (batch.size() == 0) {
+            return 0;
+        }
+        WeatherBatchWriter writer = new WeatherBatchWriter(db);
+        try {
+            return writer.write(batch);
+        } finally {
+            writer.close();
+        }
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
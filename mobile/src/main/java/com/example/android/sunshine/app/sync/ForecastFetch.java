@@ -0,0 +1,314 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+
+/**
+ * Downloads and parses the forecast of a single location.
+ *
+ * A fetch only talks to the network (and reads the database to decide whether a conditional
+ * request is safe), it never writes anything.  That makes it safe to run several of them at
+ * once, and leaves committing the parsed rows to the sync adapter.
+ */
+class ForecastFetch implements Callable<ForecastFetch> {
+    private static final String LOG_TAG = ForecastFetch.class.getSimpleName();
+
+    // The forecast was downloaded and parsed, its rows are ready to be stored
+    static final int RESULT_OK = 0;
+    // The server told us the forecast we stored last time is still current
+    static final int RESULT_NOT_MODIFIED = 1;
+    // Nothing usable came back, getLocationStatus() tells why
+    static final int RESULT_FAILED = 2;
+
+    static final String FORECAST_BASE_URL =
+            "http://api.openweathermap.org/data/2.5/forecast/daily?";
+
+    private final Context mContext;
+    private final String mBaseUrl;
+    private final String mLocationSetting;
+    private final int mJulianStartDay;
+    private final SyncTrace mTrace;
+
+    private int mResult = RESULT_FAILED;
+    @SunshineSyncAdapter.LocationStatus
+    private int mLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN;
+    private ForecastJsonParser mParser;
+    private String mETag;
+    private String mLastModified;
+
+    /**
+     * @param julianStartDay the julian day the first forecast day is stored under
+     * @param trace the trace of the sync this fetch is part of, the network phases go there
+     */
+    ForecastFetch(Context context, String locationSetting, int julianStartDay, SyncTrace trace) {
+        this(context, FORECAST_BASE_URL, locationSetting, julianStartDay, trace);
+    }
+
+    /**
+     * @param baseUrl where the forecast is downloaded from, tests point this at a local server
+     */
+    ForecastFetch(Context context, String baseUrl, String locationSetting, int julianStartDay,
+                  SyncTrace trace) {
+        mContext = context;
+        mBaseUrl = baseUrl;
+        mLocationSetting = locationSetting;
+        mJulianStartDay = julianStartDay;
+        mTrace = trace;
+    }
+
+    @Override
+    public ForecastFetch call() {
+        fetch();
+        return this;
+    }
+
+    private void fetch() {
+        // These two need to be declared outside the try/catch
+        // so that they can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        TimedInputStream inputStream = null;
+
+        String format = "json";
+        String units = "metric";
+        int numDays = 14;
+
+        try {
+            // Construct the URL for the OpenWeatherMap query
+            // Possible parameters are avaiable at OWM's forecast API page, at
+            // http://openweathermap.org/API#forecast
+            final String QUERY_PARAM = "q";
+            final String FORMAT_PARAM = "mode";
+            final String UNITS_PARAM = "units";
+            final String DAYS_PARAM = "cnt";
+            final String APPID_PARAM = "APPID";
+
+            Uri builtUri = Uri.parse(mBaseUrl).buildUpon()
+                    .appendQueryParameter(QUERY_PARAM, mLocationSetting)
+                    .appendQueryParameter(FORMAT_PARAM, format)
+                    .appendQueryParameter(UNITS_PARAM, units)
+                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
+                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                    .build();
+
+            URL url = new URL(builtUri.toString());
+
+            // Create the request to OpenWeatherMap, and open the connection
+            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setRequestMethod("GET");
+            addValidatorHeaders(urlConnection);
+            long connectStart = System.nanoTime();
+            urlConnection.connect();
+            long connectEnd = System.nanoTime();
+            mTrace.add(SyncTrace.PHASE_CONNECT, connectEnd - connectStart);
+            int responseCode = urlConnection.getResponseCode();
+            mTrace.add(SyncTrace.PHASE_FIRST_BYTE, System.nanoTime() - connectEnd);
+
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // What we have stored is still current, so there is nothing to parse, store or
+                // tell anybody about.
+                mResult = RESULT_NOT_MODIFIED;
+                mLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_OK;
+                return;
+            }
+
+            // Parse the response while it is being downloaded, rather than reading the whole
+            // body into a String first.  An empty stream surfaces as an EOFException here, which
+            // is reported the same way as any other failure to read from the server.
+            InputStream responseStream = urlConnection.getInputStream();
+            if (responseStream == null) {
+                // Nothing to do.
+                return;
+            }
+            inputStream = new TimedInputStream(responseStream);
+            ForecastJsonParser parser = new ForecastJsonParser(mJulianStartDay);
+            long parseStart = System.nanoTime();
+            try {
+                parser.parse(inputStream);
+            } finally {
+                // The parser reads as it goes, so waiting on the socket is download time and
+                // the rest is parsing
+                long readNanos = inputStream.getReadNanos();
+                mTrace.add(SyncTrace.PHASE_DOWNLOAD, readNanos);
+                mTrace.add(SyncTrace.PHASE_PARSE, System.nanoTime() - parseStart - readNanos);
+                mTrace.addDownloadBytes(inputStream.getByteCount());
+            }
+
+            // do we have an error?
+            switch (parser.getMessageCode()) {
+                case HttpURLConnection.HTTP_OK:
+                    break;
+                case HttpURLConnection.HTTP_NOT_FOUND:
+                    mLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_INVALID;
+                    return;
+                default:
+                    mLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+                    return;
+            }
+
+            mParser = parser;
+            mETag = urlConnection.getHeaderField("ETag");
+            mLastModified = urlConnection.getHeaderField("Last-Modified");
+            mResult = RESULT_OK;
+            mLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_OK;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error ", e);
+            // If the code didn't successfully get the weather data, there's no point in attempting
+            // to parse it.
+            mLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, e.getMessage(), e);
+            e.printStackTrace();
+            mLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_SERVER_INVALID;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (final IOException e) {
+                    Log.e(LOG_TAG, "Error closing stream", e);
+                }
+            }
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Turns the request into a conditional one if we stored validators for this location the
+     * last time its forecast was downloaded.  Validators are only sent while the database still
+     * holds a forecast from today on for the location, otherwise a 304 would leave us with
+     * nothing to show.
+     */
+    private void addValidatorHeaders(HttpURLConnection urlConnection) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String eTag = prefs.getString(
+                mContext.getString(R.string.pref_forecast_etag_prefix) + mLocationSetting, null);
+        String lastModified = prefs.getString(
+                mContext.getString(R.string.pref_forecast_last_modified_prefix) + mLocationSetting, null);
+        if (eTag == null && lastModified == null) {
+            return;
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        mLocationSetting, System.currentTimeMillis()),
+                new String[]{WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID},
+                null, null, null);
+        boolean haveForecast = cursor != null && cursor.getCount() > 0;
+        if (cursor != null) {
+            cursor.close();
+        }
+        if (!haveForecast) {
+            return;
+        }
+
+        if (eTag != null) {
+            urlConnection.setRequestProperty("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+            urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * Remembers the validators sent along with the forecast, so the next sync of the same
+     * location can ask the server whether anything changed.  Only call this once the rows
+     * returned by {@link #getParser()} have been stored.
+     */
+    void storeValidators() {
+        SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        String eTagKey = mContext.getString(R.string.pref_forecast_etag_prefix) + mLocationSetting;
+        String lastModifiedKey =
+                mContext.getString(R.string.pref_forecast_last_modified_prefix) + mLocationSetting;
+        if (mETag != null) {
+            editor.putString(eTagKey, mETag);
+        } else {
+            editor.remove(eTagKey);
+        }
+        if (mLastModified != null) {
+            editor.putString(lastModifiedKey, mLastModified);
+        } else {
+            editor.remove(lastModifiedKey);
+        }
+        editor.apply();
+    }
+
+    String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    int getResult() {
+        return mResult;
+    }
+
+    @SunshineSyncAdapter.LocationStatus
+    int getLocationStatus() {
+        return mLocationStatus;
+    }
+
+    /**
+     * @return the parsed response, only available when the result is {@link #RESULT_OK}.
+     */
+    ForecastJsonParser getParser() {
+        return mParser;
+    }
+
+    /**
+     * Counts the bytes read through it and the time spent blocked reading them.
+     */
+    private static class TimedInputStream extends FilterInputStream {
+        private long mReadNanos;
+        private long mByteCount;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            mReadNanos += System.nanoTime() - start;
+            if (b != -1) {
+                mByteCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            long start = System.nanoTime();
+            int read = super.read(buffer, offset, count);
+            mReadNanos += System.nanoTime() - start;
+            if (read > 0) {
+                mByteCount += read;
+            }
+            return read;
+        }
+
+        long getReadNanos() {
+            return mReadNanos;
+        }
+
+        long getByteCount() {
+            return mByteCount;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.android.sunshine.app.sync;
+
+import android.text.format.Time;
+import android.util.JsonReader;
+import android.util.MalformedJsonException;
+
+import com.example.android.sunshine.app.data.WeatherBatch;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+
+/**
+ * Pull parser for the OpenWeatherMap daily forecast response.
+ *
+ * The response is read token by token straight off the connection's input stream, and each
+ * day is appended to a {@link WeatherBatch} as soon as it has been read.  Neither the raw JSON
+ * string nor an {@link org.json.JSONObject} tree is ever built, so the memory held during a
+ * sync is bounded by the rows we keep rather than by the size of the payload.
+ */
+class ForecastJsonParser {
+
+    // These are the names of the JSON objects that need to be extracted.
+
+    // Location information
+    private static final String OWM_CITY = "city";
+    private static final String OWM_CITY_NAME = "name";
+    private static final String OWM_COORD = "coord";
+
+    // Location coordinate
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    // Weather information.  Each day's forecast info is an element of the "list" array.
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    // All temperatures are children of the "temp" object.
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_DESCRIPTION = "main";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    // The fields every day must have, like the getDouble and getInt calls of the JSONObject
+    // parser this replaced required them
+    private static final int FIELD_PRESSURE = 1;
+    private static final int FIELD_HUMIDITY = 1 << 1;
+    private static final int FIELD_WINDSPEED = 1 << 2;
+    private static final int FIELD_WIND_DIRECTION = 1 << 3;
+    private static final int FIELD_MAX = 1 << 4;
+    private static final int FIELD_MIN = 1 << 5;
+    private static final int FIELD_DESCRIPTION = 1 << 6;
+    private static final int FIELD_WEATHER_ID = 1 << 7;
+    private static final int ALL_DAY_FIELDS = (1 << 8) - 1;
+
+    // these names must match the fields above, in bit order
+    private static final String[] DAY_FIELD_NAMES = {
+            OWM_PRESSURE,
+            OWM_HUMIDITY,
+            OWM_WINDSPEED,
+            OWM_WIND_DIRECTION,
+            OWM_TEMPERATURE + "." + OWM_MAX,
+            OWM_TEMPERATURE + "." + OWM_MIN,
+            OWM_WEATHER + "." + OWM_DESCRIPTION,
+            OWM_WEATHER + "." + OWM_WEATHER_ID
+    };
+
+    private final int mJulianStartDay;
+    private final Time mDayTime = new Time();
+
+    private int mMessageCode = HttpURLConnection.HTTP_OK;
+    private String mCityName;
+    private double mCityLatitude;
+    private double mCityLongitude;
+    private boolean mHasCityCoord;
+    private boolean mHasList;
+    private final WeatherBatch mWeatherBatch = new WeatherBatch(14);
+
+    /**
+     * @param julianStartDay the julian day of the first element in the forecast list.  OWM
+     *                       sends the days in order, so day i is stored as julianStartDay + i.
+     */
+    ForecastJsonParser(int julianStartDay) {
+        mJulianStartDay = julianStartDay;
+    }
+
+    /**
+     * Reads the complete response from the given stream.  The stream is not closed.
+     *
+     * @throws IOException if the stream could not be read (including an empty stream)
+     * @throws JSONException if the payload is not a well formed forecast response
+     */
+    void parse(InputStream inputStream) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case OWM_MESSAGE_CODE:
+                        // OWM sends this either as a number or as a string, nextInt copes with both
+                        mMessageCode = reader.nextInt();
+                        break;
+                    case OWM_CITY:
+                        readCity(reader);
+                        break;
+                    case OWM_LIST:
+                        readList(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            throw new JSONException(e.getMessage());
+        }
+
+        if (mMessageCode == HttpURLConnection.HTTP_OK
+                && (!mHasList || mCityName == null || !mHasCityCoord)) {
+            throw new JSONException("Forecast response is missing the city or the list");
+        }
+    }
+
+    private void readCity(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(OWM_CITY_NAME)) {
+                mCityName = reader.nextString();
+            } else if (name.equals(OWM_COORD)) {
+                boolean hasLatitude = false;
+                boolean hasLongitude = false;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String coordName = reader.nextName();
+                    if (coordName.equals(OWM_LATITUDE)) {
+                        mCityLatitude = reader.nextDouble();
+                        hasLatitude = true;
+                    } else if (coordName.equals(OWM_LONGITUDE)) {
+                        mCityLongitude = reader.nextDouble();
+                        hasLongitude = true;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                mHasCityCoord = hasLatitude && hasLongitude;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readList(JsonReader reader) throws IOException, JSONException {
+        mHasList = true;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readDay(reader, mWeatherBatch.size());
+        }
+        reader.endArray();
+    }
+
+    private void readDay(JsonReader reader, int index) throws IOException, JSONException {
+        // These are the values that will be collected.
+        double pressure = 0;
+        int humidity = 0;
+        double windSpeed = 0;
+        double windDirection = 0;
+
+        double high = 0;
+        double low = 0;
+
+        String description = null;
+        int weatherId = 0;
+
+        int fields = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case OWM_PRESSURE:
+                    pressure = reader.nextDouble();
+                    fields |= FIELD_PRESSURE;
+                    break;
+                case OWM_HUMIDITY:
+                    humidity = (int) reader.nextDouble();
+                    fields |= FIELD_HUMIDITY;
+                    break;
+                case OWM_WINDSPEED:
+                    windSpeed = reader.nextDouble();
+                    fields |= FIELD_WINDSPEED;
+                    break;
+                case OWM_WIND_DIRECTION:
+                    windDirection = reader.nextDouble();
+                    fields |= FIELD_WIND_DIRECTION;
+                    break;
+                case OWM_TEMPERATURE:
+                    // Temperatures are in a child object called "temp".  Try not to name
+                    // variables "temp" when working with temperature.  It confuses everybody.
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String temperatureName = reader.nextName();
+                        if (temperatureName.equals(OWM_MAX)) {
+                            high = reader.nextDouble();
+                            fields |= FIELD_MAX;
+                        } else if (temperatureName.equals(OWM_MIN)) {
+                            low = reader.nextDouble();
+                            fields |= FIELD_MIN;
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case OWM_WEATHER:
+                    // Description is in a child array called "weather", which is 1 element long.
+                    // That element also contains a weather code.
+                    reader.beginArray();
+                    if (reader.hasNext()) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String weatherName = reader.nextName();
+                            if (weatherName.equals(OWM_DESCRIPTION)) {
+                                description = reader.nextString();
+                                fields |= FIELD_DESCRIPTION;
+                            } else if (weatherName.equals(OWM_WEATHER_ID)) {
+                                weatherId = reader.nextInt();
+                                fields |= FIELD_WEATHER_ID;
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (fields != ALL_DAY_FIELDS) {
+            // A day without its temperatures or weather id would be stored as 0 degrees and
+            // weather id 0, rather fail the whole sync like a malformed response
+            int missing = Integer.numberOfTrailingZeros(~fields & ALL_DAY_FIELDS);
+            throw new JSONException("Forecast day " + index + " has no "
+                    + DAY_FIELD_NAMES[missing]);
+        }
+
+        // Cheating to convert this to UTC time, which is what we want anyhow
+        long dateTime = mDayTime.setJulianDay(mJulianStartDay + index);
+
+        // The location is filled in by the sync adapter once the response has been read
+        mWeatherBatch.add(0, dateTime, weatherId, description, low, high, humidity, pressure,
+                windSpeed, windDirection);
+    }
+
+    /**
+     * @return the "cod" field of the response, HTTP_OK if the server didn't send one.
+     */
+    int getMessageCode() {
+        return mMessageCode;
+    }
+
+    String getCityName() {
+        return mCityName;
+    }
+
+    double getCityLatitude() {
+        return mCityLatitude;
+    }
+
+    double getCityLongitude() {
+        return mCityLongitude;
+    }
+
+    /**
+     * @return one row per forecast day, in the order the server sent them.  The rows don't carry
+     * a location key yet, since the city is only known once the whole response has been read.
+     */
+    WeatherBatch getWeatherBatch() {
+        return mWeatherBatch;
+    }
+}
@@ -12,6 +12,7 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.PeriodicSync;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
@@ -30,29 +31,29 @@ import android.text.format.Time;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SunshineSettings;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.ForecastSnapshotCache;
+import com.example.android.sunshine.app.data.WeatherBatch;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherProvider;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+import com.example.android.sunshine.shared.ForecastPayload;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-import static com.example.android.sunshine.app.Utility.formatTemperature;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
@@ -66,19 +67,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
 
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
-
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID,  LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
     public @interface LocationStatus {}
@@ -89,6 +77,17 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
 
+    // Sync extra asking for every location in the location table to be refreshed, not only the
+    // preferred one.  The periodic sync sets it, a sync the user asked for doesn't.
+    public static final String SYNC_EXTRAS_ALL_LOCATIONS = "sync_all_locations";
+    // Upper bound on the number of forecasts downloaded at the same time
+    private static final int MAX_PARALLEL_FETCHES = 4;
+    // How long each consumer of a finished sync may take before it is given up on
+    private static final long FANOUT_TIMEOUT_MILLIS = 10 * 1000;
+    // The notification may have to download its large icon first
+    private static final long NOTIFICATION_TIMEOUT_MILLIS = 20 * 1000;
+    private static final long LARGE_ICON_TIMEOUT_MILLIS = 15 * 1000;
+
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
     }
@@ -96,278 +95,315 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     @Override
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
         Log.d(LOG_TAG, "Starting sync");
-        String locationQuery = Utility.getPreferredLocation(getContext());
+        String preferredLocation = Utility.getPreferredLocation(getContext());
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+        // The preferred location always comes first, the others are only refreshed on request.
+        List<String> locationSettings = new ArrayList<String>();
+        locationSettings.add(preferredLocation);
+        if (extras != null && extras.getBoolean(SYNC_EXTRAS_ALL_LOCATIONS, false)) {
+            addSavedLocations(locationSettings);
+        }
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
 
-        String format = "json";
-        String units = "metric";
-        int numDays = 14;
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
 
-        try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-            final String APPID_PARAM = "APPID";
-
-            Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                    .appendQueryParameter(QUERY_PARAM, locationQuery)
-                    .appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
-                    .build();
-
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
-            }
+        Time dayTime = new Time();
+        dayTime.setToNow();
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
-            }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Error ", e);
-            // If the code didn't successfully get the weather data, there's no point in attempting
-            // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+        // we start at the day returned by local time. Otherwise this is a mess.
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+
+        SyncTrace trace = new SyncTrace();
+        try {
+            long fetchStart = System.nanoTime();
+            List<ForecastFetch> fetches = fetchForecasts(locationSettings, julianStartDay, trace);
+            trace.add(SyncTrace.PHASE_FETCH, System.nanoTime() - fetchStart);
+            storeForecasts(fetches, preferredLocation, julianStartDay, trace);
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
-                }
+            trace.finish(locationSettings.size());
+            SyncTraceLog.add(trace);
+            Log.d(LOG_TAG, "Sync trace: " + trace);
+        }
+    }
+
+    /**
+     * Adds every location stored in the location table that isn't in the list yet.
+     */
+    private void addSavedLocations(List<String> locationSettings) {
+        Cursor locationCursor = getContext().getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                null,
+                null,
+                null);
+        if (locationCursor == null) {
+            return;
+        }
+        while (locationCursor.moveToNext()) {
+            String locationSetting = locationCursor.getString(0);
+            if (!locationSettings.contains(locationSetting)) {
+                locationSettings.add(locationSetting);
             }
         }
-        return;
+        locationCursor.close();
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
+     * Downloads the forecasts of all the given locations.
      *
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * @return the finished fetches, in the order of locationSettings.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
-
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
-
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
-
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
+    private List<ForecastFetch> fetchForecasts(List<String> locationSettings, int julianStartDay,
+                                               SyncTrace trace) {
+        List<ForecastFetch> fetches = new ArrayList<ForecastFetch>(locationSettings.size());
+        for (String locationSetting : locationSettings) {
+            fetches.add(new ForecastFetch(getContext(), locationSetting, julianStartDay, trace));
+        }
+        return runFetches(fetches);
+    }
 
-        final String OWM_MESSAGE_CODE = "cod";
+    /**
+     * Runs the fetches.  A single one runs on the calling thread, several run concurrently on a
+     * pool of at most {@link #MAX_PARALLEL_FETCHES} threads.
+     *
+     * @return the fetches that finished, in the order they were given.  If the calling thread
+     * is interrupted, the ones that hadn't finished by then are left out.
+     */
+    static List<ForecastFetch> runFetches(List<ForecastFetch> fetches) {
+        if (fetches.size() == 1) {
+            fetches.get(0).call();
+            return fetches;
+        }
 
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_FETCHES, fetches.size()));
+        List<Future<ForecastFetch>> futures =
+                new ArrayList<Future<ForecastFetch>>(fetches.size());
         try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-            // do we have an error?
-            if ( forecastJson.has(OWM_MESSAGE_CODE) ) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
+            for (ForecastFetch fetch : fetches) {
+                futures.add(executor.submit(fetch));
+            }
+            for (Future<ForecastFetch> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Left out below
                 }
             }
+        } catch (InterruptedException e) {
+            // The sync was cancelled, only the fetches that finished in time get stored
+            Log.e(LOG_TAG, "Interrupted while fetching forecasts", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
 
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+        // A fetch still running is only read once its future says it is done, so its fields
+        // are never read while a pool thread may still be writing them
+        List<ForecastFetch> finished = new ArrayList<ForecastFetch>(fetches.size());
+        for (Future<ForecastFetch> future : futures) {
+            if (!future.isDone() || future.isCancelled()) {
+                continue;
+            }
+            try {
+                // Doesn't block, the future is done
+                finished.add(future.get());
+            } catch (ExecutionException e) {
+                Log.e(LOG_TAG, "Forecast fetch failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return finished;
+    }
 
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
+    /**
+     * Stores the rows of every successful fetch in one bulk write, so all locations are
+     * committed in a single transaction and observers are notified once.  The location status,
+     * widgets, Muzei, the wearable and the notification only follow the preferred location.
+     */
+    private void storeForecasts(List<ForecastFetch> fetches, String preferredLocation,
+                                int julianStartDay, SyncTrace trace) {
+        // Insert the new weather information into the database
+        int notificationsBefore = WeatherProvider.getChangeNotificationCount();
+        WeatherBatch batch = new WeatherBatch(14 * fetches.size());
+        int preferredToday = -1;
+        @LocationStatus int preferredStatus = LOCATION_STATUS_UNKNOWN;
+
+        for (ForecastFetch fetch : fetches) {
+            boolean preferred = fetch.getLocationSetting().equals(preferredLocation);
+            if (preferred) {
+                preferredStatus = fetch.getLocationStatus();
+            }
+            if (fetch.getResult() == ForecastFetch.RESULT_NOT_MODIFIED) {
+                Log.d(LOG_TAG, "Forecast for " + fetch.getLocationSetting() + " not modified");
+                continue;
+            } else if (fetch.getResult() != ForecastFetch.RESULT_OK) {
+                continue;
+            }
 
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+            ForecastJsonParser parser = fetch.getParser();
+            long start = System.nanoTime();
+            long locationId = addLocation(fetch.getLocationSetting(), parser.getCityName(),
+                    parser.getCityLatitude(), parser.getCityLongitude());
+            trace.add(SyncTrace.PHASE_ADD_LOCATION, System.nanoTime() - start);
 
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
+            WeatherBatch weatherBatch = parser.getWeatherBatch();
+            weatherBatch.setLocationId(0, locationId);
+            if (preferred && weatherBatch.size() > 0) {
+                //Considering that index 0 is always "today"
+                preferredToday = batch.size();
+            }
+            batch.addAll(weatherBatch);
+        }
 
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
+        // add to database
+        int changed = 0;
+        int deleted = 0;
+        if ( batch.size() > 0 ) {
+            // The rows go to the provider as primitive arrays and are bound straight into
+            // compiled statements.  Only rows that differ from what we already have are written,
+            // and observers are only notified if there was at least one of them
+            long start = System.nanoTime();
+            Bundle result = getContext().getContentResolver().call(
+                    WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.METHOD_BULK_INSERT_WEATHER, null, batch.toBundle());
+            if (result != null) {
+                changed = result.getInt(WeatherContract.EXTRA_ROWS_WRITTEN);
+            }
+            trace.add(SyncTrace.PHASE_BULK_INSERT, System.nanoTime() - start);
+
+            // Now that the rows are in, the next sync may ask whether they are still current.
+            // If they didn't make it, the next sync has to download them again.
+            if (result != null) {
+                for (ForecastFetch fetch : fetches) {
+                    if (fetch.getResult() == ForecastFetch.RESULT_OK
+                            && fetch.getParser().getWeatherBatch().size() > 0) {
+                        fetch.storeValidators();
+                    }
+                }
+            }
 
+            // delete old data so we don't build up an endless history
+            start = System.nanoTime();
             Time dayTime = new Time();
-            dayTime.setToNow();
-
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-            // now we work exclusively in UTC
-            dayTime = new Time();
-
-
-            for(int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
-
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
-
-
+            deleted = getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                    new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
+            trace.add(SyncTrace.PHASE_DELETE, System.nanoTime() - start);
+        }
+        // The provider runs in this process, so it counted every change this sync caused
+        trace.setWrites(changed,
+                WeatherProvider.getChangeNotificationCount() - notificationsBefore);
+
+        if (preferredToday != -1) {
+            // Load the preferred forecast once, right after the commit.  The widgets, Muzei and
+            // the notification all read this same snapshot instead of querying again.
+            long start = System.nanoTime();
+            final ForecastSnapshot snapshot = ForecastSnapshotCache.get(getContext(),
+                    preferredLocation, System.currentTimeMillis());
+            trace.add(SyncTrace.PHASE_SNAPSHOT, System.nanoTime() - start);
+
+            // The data is committed, everything from here on runs on the fan-out threads and
+            // the sync thread only pays for handing it over
+            if (changed > 0 || deleted > 0) {
+                // Widgets and Muzei would only redraw exactly what they already show otherwise
+                start = System.nanoTime();
+                SyncFanout.dispatch(getContext(), "widgets", new Runnable() {
+                    @Override
+                    public void run() {
+                        updateWidgets();
+                    }
+                }, FANOUT_TIMEOUT_MILLIS);
+                trace.add(SyncTrace.PHASE_WIDGETS, System.nanoTime() - start);
+                start = System.nanoTime();
+                SyncFanout.dispatch(getContext(), "muzei", new Runnable() {
+                    @Override
+                    public void run() {
+                        updateMuzei();
+                    }
+                }, FANOUT_TIMEOUT_MILLIS);
+                trace.add(SyncTrace.PHASE_MUZEI, System.nanoTime() - start);
             }
+            start = System.nanoTime();
+            SyncFanout.dispatch(getContext(), "notification", new Runnable() {
+                @Override
+                public void run() {
+                    notifyWeather(snapshot);
+                }
+            }, NOTIFICATION_TIMEOUT_MILLIS);
+            trace.add(SyncTrace.PHASE_NOTIFICATION, System.nanoTime() - start);
+            //Send weather data do be displayed on sunshine Watchface on connected wearable
+            start = System.nanoTime();
+            SyncFanout.dispatch(getContext(), "wear", new Runnable() {
+                @Override
+                public void run() {
+                    notifyWearable(getContext(), snapshot, false);
+                }
+            }, FANOUT_TIMEOUT_MILLIS);
+            trace.add(SyncTrace.PHASE_WEAR, System.nanoTime() - start);
+        }
+        Log.d(LOG_TAG, "Sync Complete. " + fetches.size() + " Locations, " + batch.size()
+                + " Received, " + changed + " Changed, " + deleted + " Deleted. Snapshot cache "
+                + ForecastSnapshotCache.getHitCount() + " Hits, "
+                + ForecastSnapshotCache.getMissCount() + " Misses");
+        if (preferredStatus == LOCATION_STATUS_OK) {
+            // The server answered, what's stored for the preferred location is current
+            PreferenceManager.getDefaultSharedPreferences(getContext()).edit()
+                    .putLong(getContext().getString(R.string.pref_last_sync),
+                            System.currentTimeMillis())
+                    .apply();
+        }
+        setLocationStatus(getContext(), preferredStatus);
+    }
 
-            int inserted = 0;
-            // add to database
-            if ( cVVector.size() > 0 ) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
-
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-                //Send weather data do be displayed on sunshine Watchface on connected wearable
-                //Considering that index 0 is always "today"
-                SunshineWearableConnector sunshineWearableConnector = new SunshineWearableConnector(getContext());
-                sunshineWearableConnector.notifyWearable(cVVector.get(0).getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
-                        formatTemperature(getContext(), cVVector.get(0).getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)),
-                        formatTemperature(getContext(), cVVector.get(0).getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)));
-
-            }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+    /**
+     * Sends today's weather and the whole forecast to the watch face.
+     *
+     * @param snapshot the forecast of the preferred location, starting today
+     * @param force    send it even if the watch should have it already, when the watch asked
+     */
+    static void notifyWearable(Context context, ForecastSnapshot snapshot, boolean force) {
+        if (snapshot == null || snapshot.size() == 0) {
+            return;
+        }
+        SunshineSettings settings = SunshineSettings.get(context);
+        //Considering that index 0 is always "today"
+        int weatherId = snapshot.getWeatherId(0);
+        String high = settings.formatTemperature(snapshot.getMaxTemp(0));
+        String low = settings.formatTemperature(snapshot.getMinTemp(0));
+        byte[] forecast = encodeForecast(settings, snapshot);
+        SunshineWearableConnector sunshineWearableConnector =
+                SunshineWearableConnector.acquire(context);
+        sunshineWearableConnector.notifyWearable(weatherId, high, low, forecast, force);
+        sunshineWearableConnector.release();
+    }
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+    /**
+     * @return the forecast in the compact form the watch face decodes, null without a snapshot.
+     */
+    private static byte[] encodeForecast(SunshineSettings settings, ForecastSnapshot snapshot) {
+        if (snapshot == null) {
+            return null;
+        }
+        int count = Math.min(snapshot.size(), ForecastPayload.MAX_DAYS);
+        long[] dates = new long[count];
+        int[] weatherIds = new int[count];
+        double[] highs = new double[count];
+        double[] lows = new double[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = snapshot.getDate(i);
+            weatherIds[i] = snapshot.getWeatherId(i);
+            highs[i] = snapshot.getMaxTemp(i);
+            lows[i] = snapshot.getMinTemp(i);
         }
+        int flags = settings.isMetric() ? 0 : ForecastPayload.FLAG_IMPERIAL;
+        return ForecastPayload.encode(flags, dates, weatherIds, highs, lows, count);
     }
 
     private void updateWidgets() {
@@ -388,7 +424,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-    private void notifyWeather() {
+    private void notifyWeather(ForecastSnapshot snapshot) {
         Context context = getContext();
         //checking the last update and notify if it' the first of the day
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
@@ -403,28 +439,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
             if (System.currentTimeMillis() - lastSync >= DAY_IN_MILLIS) {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
-                String locationQuery = Utility.getPreferredLocation(context);
-
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
-
-                    //Send weather data do be displayed on sunshine Watchface on connected wearable
-                    //Considering that index 0 is always "today"
-                    SunshineWearableConnector sunshineWearableConnector = new SunshineWearableConnector(getContext());
-                    sunshineWearableConnector.notifyWearable(weatherId,String.valueOf(high),String.valueOf(low));
+                // The snapshot starts today, so its first row is today's forecast if we have one
+                if (snapshot != null && snapshot.size() > 0
+                        && snapshot.getDate(0) == snapshot.getStartDate()) {
+                    SunshineSettings settings = SunshineSettings.get(context);
+                    int weatherId = snapshot.getWeatherId(0);
+                    double high = snapshot.getMaxTemp(0);
+                    double low = snapshot.getMinTemp(0);
+                    String desc = snapshot.getShortDesc(0);
 
                     int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
                     Resources resources = context.getResources();
                     int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-                    String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
+                    String artUrl = Utility.getArtUrlForWeatherCondition(settings, weatherId);
 
                     // On Honeycomb and higher devices, we can retrieve the size of the large icon
                     // Prior to that, we use a fixed size
@@ -445,8 +472,9 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                                 .asBitmap()
                                 .error(artResourceId)
                                 .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
+                                .into(largeIconWidth, largeIconHeight)
+                                .get(LARGE_ICON_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException | ExecutionException | TimeoutException e) {
                         Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
                         largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
                     }
@@ -455,8 +483,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     // Define the text of the forecast.
                     String contentText = String.format(context.getString(R.string.format_notification),
                             desc,
-                            formatTemperature(context, high),
-                            formatTemperature(context, low));
+                            settings.formatTemperature(high),
+                            settings.formatTemperature(low));
 
                     // NotificationCompatBuilder is a very convenient way to build backward-compatible
                     // notifications.  Just throw in some data.
@@ -496,7 +524,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     editor.commit();
 
                 }
-                cursor.close();
             }
         }
     }
@@ -552,21 +579,26 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Helper method to schedule the sync adapter periodic execution
+     * Helper method to schedule the sync adapter periodic execution.  The periodic sync
+     * refreshes every saved location, so switching back to one shows a current forecast.
      */
     public static void configurePeriodicSync(Context context, int syncInterval, int flexTime) {
         Account account = getSyncAccount(context);
         String authority = context.getString(R.string.content_authority);
+        // Periodic syncs are told apart by their extras, this replaces the one without any
+        ContentResolver.removePeriodicSync(account, authority, new Bundle());
+        Bundle extras = new Bundle();
+        extras.putBoolean(SYNC_EXTRAS_ALL_LOCATIONS, true);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
             // we can enable inexact timers in our periodic sync
             SyncRequest request = new SyncRequest.Builder().
                     syncPeriodic(syncInterval, flexTime).
                     setSyncAdapter(account, authority).
-                    setExtras(new Bundle()).build();
+                    setExtras(extras).build();
             ContentResolver.requestSync(request);
         } else {
             ContentResolver.addPeriodicSync(account,
-                    authority, new Bundle(), syncInterval);
+                    authority, extras, syncInterval);
         }
     }
 
@@ -639,7 +671,18 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     public static void initializeSyncAdapter(Context context) {
-        getSyncAccount(context);
+        Account account = getSyncAccount(context);
+        if (account == null) {
+            return;
+        }
+        // Accounts made before the periodic sync refreshed every location still have the old one
+        for (PeriodicSync sync : ContentResolver.getPeriodicSyncs(account,
+                context.getString(R.string.content_authority))) {
+            if (sync.extras.getBoolean(SYNC_EXTRAS_ALL_LOCATIONS, false)) {
+                return;
+            }
+        }
+        configurePeriodicSync(context, SYNC_INTERVAL, SYNC_FLEXTIME);
     }
 
     /**
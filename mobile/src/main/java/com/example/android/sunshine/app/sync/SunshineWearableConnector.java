@@ -1,5 +1,3 @@
-
-
 package com.example.android.sunshine.app.sync;
 
 /*
@@ -8,72 +6,354 @@ package com.example.android.sunshine.app.sync;
 
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.shared.ForecastPayload;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one connection to the wearable data layer, shared by everybody that pushes to the watch.
+ *
+ * Users {@link #acquire(Context)} the connector, push, and {@link #release()} it.  The client
+ * only connects once there is something to send, pushes made before the connection is up wait
+ * for it, and pushes arriving within {@link #COALESCE_DELAY_MILLIS} of each other go out as a
+ * single DataItem update with the latest values.  Once the last user has released it and
+ * nothing is left to send, the client disconnects.  Until then it holds
+ * {@link SyncFanoutService}, so a push queued at the end of a sync isn't lost with the process.
+ *
+ * Every DataItem write wakes the watch and redraws the face, so a push identical to the last
+ * one written is skipped, as long as every node connected now was connected then too.  A
+ * successful write only means the local data store has the items, the data layer syncs them to
+ * the nodes from there, so a node that wasn't there for the last write gets the push again.
+ * Pushes answering a watch that asked for the forecast always go out, changed so the watch is
+ * told about them even if the items were the same.
+ */
 public class SunshineWearableConnector implements GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener{
 
-    private GoogleApiClient mGoogleApiClient;
+    private static final String LOG_TAG = SunshineWearableConnector.class.getSimpleName();
+
+    private static final String PATH_TODAY_WEATHER = "/today-weather-data";
+    private static final long COALESCE_DELAY_MILLIS = 1000;
+
+    private static final Object sLock = new Object();
+    private static SunshineWearableConnector sInstance;
+
+    // Changes the items of a forced push, the watch face doesn't read it
+    private static final String KEY_PUSHED_AT = "pushedAt";
+
+    // Pushes skipped because they were already written for every connected node
+    private static final AtomicInteger sSuppressedPushes = new AtomicInteger();
+
+    private final Context mContext;
+    private final GoogleApiClient mGoogleApiClient;
+    // Connection callbacks arrive on the main thread, so connecting and pushing happen there too
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
 
+    // guarded by sLock
+    private int mRefCount;
+    private boolean mHasPending;
+    private boolean mFlushScheduled;
+    private boolean mHoldingProcess;
+    private boolean mPendingForce;
+    private int mPendingWeatherId;
+    private String mPendingHigh;
+    private String mPendingLow;
+    private byte[] mPendingForecast;
 
-    public SunshineWearableConnector(Context context){
+    // only used on the main thread
+    private int mPushesInFlight;
 
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable mDisconnectIfIdle = new Runnable() {
+        @Override
+        public void run() {
+            disconnectIfIdle();
+        }
+    };
+
+    private SunshineWearableConnector(Context context){
+
+        mContext = context;
         mGoogleApiClient = new GoogleApiClient.Builder(context)
                 .addApi(Wearable.API)
                 .addConnectionCallbacks(this)
                 .addOnConnectionFailedListener(this)
                 .build();
 
-        mGoogleApiClient.connect();
+    }
 
+    /**
+     * @return the shared connector, every call must be matched by a {@link #release()}.
+     */
+    public static SunshineWearableConnector acquire(Context context) {
+        synchronized (sLock) {
+            if (sInstance == null) {
+                sInstance = new SunshineWearableConnector(context.getApplicationContext());
+            }
+            sInstance.mRefCount++;
+            return sInstance;
+        }
     }
 
-public void notifyWearable(int weatherId, String high, String low){
-
-    PutDataMapRequest putDataMapRequest = PutDataMapRequest.create("/today-weather-data");
-    putDataMapRequest.getDataMap().putInt("weatherId",weatherId);
-    putDataMapRequest.getDataMap().putString("high",high);
-    putDataMapRequest.getDataMap().putString("low",low);
-
-    PutDataRequest putDataRequest = putDataMapRequest.asPutDataRequest();
-    Wearable.DataApi.putDataItem(mGoogleApiClient,putDataRequest)
-            .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                @Override
-                public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
-                    if (!dataItemResult.getStatus().isSuccess()){
-                        Log.e("notifyWearable", "Error sending weather data");
-                    }else{
-                        Log.d("notifyWearable", "Success sending weather data");
-                    }
+    public void release() {
+        synchronized (sLock) {
+            if (mRefCount == 0) {
+                throw new IllegalStateException("release() without acquire()");
+            }
+            mRefCount--;
+            if (mRefCount > 0) {
+                return;
+            }
+        }
+        mHandler.post(mDisconnectIfIdle);
+    }
+
+    /**
+     * Queues today's weather for the watch.  Returns right away, the push is made once the
+     * client is connected and the coalescing delay is over.
+     *
+     * @param forecast the whole forecast encoded by {@link ForecastPayload}, null to only send
+     *                 today's weather
+     * @param force    send it even if it is the same as the last push, for a watch asking
+     */
+    public void notifyWearable(int weatherId, String high, String low, byte[] forecast,
+                               boolean force){
+        synchronized (sLock) {
+            // A forced push coalesced with a later one still goes out
+            mPendingForce |= force;
+            mPendingWeatherId = weatherId;
+            mPendingHigh = high;
+            mPendingLow = low;
+            mPendingForecast = forecast;
+            mHasPending = true;
+            if (!mHoldingProcess) {
+                mHoldingProcess = true;
+                SyncFanoutService.hold(mContext);
+            }
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mHandler.postDelayed(mFlush, COALESCE_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void flush() {
+        final int weatherId;
+        final String high;
+        final String low;
+        final byte[] forecast;
+        final boolean force;
+        synchronized (sLock) {
+            mFlushScheduled = false;
+            if (!mHasPending) {
+                return;
+            }
+            if (!mGoogleApiClient.isConnected()) {
+                // onConnected flushes again
+                if (!mGoogleApiClient.isConnecting()) {
+                    mGoogleApiClient.connect();
                 }
-            });
+                return;
+            }
+            weatherId = mPendingWeatherId;
+            high = mPendingHigh;
+            low = mPendingLow;
+            forecast = mPendingForecast;
+            force = mPendingForce;
+            mPendingForecast = null;
+            mPendingForce = false;
+            mHasPending = false;
+        }
 
+        final int hash = hashPush(weatherId, high, low, forecast);
+        // Held like a push, so the client stays connected until we know which nodes are there
+        mPushesInFlight++;
+        Wearable.NodeApi.getConnectedNodes(mGoogleApiClient)
+                .setResultCallback(new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+                    @Override
+                    public void onResult(@NonNull NodeApi.GetConnectedNodesResult result) {
+                        final List<Node> nodes = result.getNodes();
+                        if (!force && result.getStatus().isSuccess()
+                                && isWritten(nodes, hash)) {
+                            int suppressed = sSuppressedPushes.incrementAndGet();
+                            Log.d(LOG_TAG, "Skipping push the watch already has, "
+                                    + suppressed + " skipped so far");
+                        } else {
+                            putWeather(weatherId, high, low, forecast, force, new Runnable() {
+                                @Override
+                                public void run() {
+                                    recordWritten(nodes, hash);
+                                }
+                            });
+                        }
+                        mPushesInFlight--;
+                        disconnectIfIdle();
+                    }
+                });
+    }
+
+    /**
+     * @param force       change the items even if the values are the same, so the watch is told
+     * @param onWritten   run once the last item has been written
+     */
+    private void putWeather(int weatherId, String high, String low, byte[] forecast,
+                            boolean force, Runnable onWritten) {
+        long pushedAt = System.currentTimeMillis();
+        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(PATH_TODAY_WEATHER);
+        putDataMapRequest.getDataMap().putInt("weatherId",weatherId);
+        putDataMapRequest.getDataMap().putString("high",high);
+        putDataMapRequest.getDataMap().putString("low",low);
+        if (force) {
+            putDataMapRequest.getDataMap().putLong(KEY_PUSHED_AT, pushedAt);
+        }
+        putDataItem(putDataMapRequest, forecast == null ? onWritten : null);
+
+        if (forecast != null) {
+            PutDataMapRequest forecastRequest = PutDataMapRequest.create(ForecastPayload.PATH);
+            forecastRequest.getDataMap().putByteArray(ForecastPayload.KEY_PAYLOAD, forecast);
+            if (force) {
+                forecastRequest.getDataMap().putLong(KEY_PUSHED_AT, pushedAt);
+            }
+            putDataItem(forecastRequest, onWritten);
+        }
+    }
+
+    private void putDataItem(final PutDataMapRequest putDataMapRequest,
+                             final Runnable onSuccess) {
+        PutDataRequest putDataRequest = putDataMapRequest.asPutDataRequest();
+        mPushesInFlight++;
+        Wearable.DataApi.putDataItem(mGoogleApiClient,putDataRequest)
+                .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+                    @Override
+                    public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
+                        if (!dataItemResult.getStatus().isSuccess()){
+                            Log.e(LOG_TAG, "Error sending " + putDataMapRequest.getUri().getPath());
+                        }else{
+                            Log.d(LOG_TAG, "Success sending " + putDataMapRequest.getUri().getPath());
+                            if (onSuccess != null) {
+                                onSuccess.run();
+                            }
+                        }
+                        mPushesInFlight--;
+                        disconnectIfIdle();
+                    }
+                });
+    }
+
+    private static int hashPush(int weatherId, String high, String low, byte[] forecast) {
+        int hash = weatherId;
+        hash = 31 * hash + (high != null ? high.hashCode() : 0);
+        hash = 31 * hash + (low != null ? low.hashCode() : 0);
+        hash = 31 * hash + Arrays.hashCode(forecast);
+        return hash;
+    }
 
+    /**
+     * @return true if the last push written to the local data store had this hash, and every
+     * node connected now was connected then.
+     */
+    private boolean isWritten(List<Node> nodes, int hash) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String hashKey = mContext.getString(R.string.pref_wearable_push_hash);
+        if (!prefs.contains(hashKey) || prefs.getInt(hashKey, 0) != hash) {
+            return false;
+        }
+        Set<String> writtenNodes = prefs.getStringSet(
+                mContext.getString(R.string.pref_wearable_push_nodes),
+                Collections.<String>emptySet());
+        for (Node node : nodes) {
+            if (!writtenNodes.contains(node.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    /**
+     * The nodes of the last write replace the ones before, so a node connected after it is
+     * pushed to again.  One that drops off and comes back is synced the items by the data layer
+     * when it reconnects, and asks for them when its face is shown.
+     */
+    private void recordWritten(List<Node> nodes, int hash) {
+        Set<String> nodeIds = new HashSet<String>();
+        for (Node node : nodes) {
+            nodeIds.add(node.getId());
+        }
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .putInt(mContext.getString(R.string.pref_wearable_push_hash), hash)
+                .putStringSet(mContext.getString(R.string.pref_wearable_push_nodes), nodeIds)
+                .apply();
+    }
+
+    /**
+     * @return how many pushes were skipped since the process started because they were already
+     * written for every connected node.
+     */
+    public static int getSuppressedPushCount() {
+        return sSuppressedPushes.get();
+    }
+
+    private void disconnectIfIdle() {
+        synchronized (sLock) {
+            if (mRefCount > 0 || mHasPending || mPushesInFlight > 0) {
+                return;
+            }
+            if (mHoldingProcess) {
+                mHoldingProcess = false;
+                SyncFanoutService.release(mContext);
+            }
+        }
+        if (mGoogleApiClient.isConnected() || mGoogleApiClient.isConnecting()) {
+            mGoogleApiClient.disconnect();
+        }
     }
 
     @Override
     public void onConnected(@Nullable Bundle bundle) {
-
+        flush();
     }
 
     @Override
     public void onConnectionSuspended(int i) {
-
+        // The client reconnects by itself, and onConnected sends whatever is still pending
     }
 
     @Override
     public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
-
+        Log.e(LOG_TAG, "Could not connect to the wearable: " + connectionResult);
+        synchronized (sLock) {
+            // There's nobody to send it to, the next push tries to connect again
+            mHasPending = false;
+        }
+        disconnectIfIdle();
     }
 }
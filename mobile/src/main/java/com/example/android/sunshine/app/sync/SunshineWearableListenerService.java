@@ -0,0 +1,61 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.ForecastSnapshotCache;
+import com.example.android.sunshine.shared.ForecastPayload;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.WearableListenerService;
+
+/**
+ * Answers the watch face asking for the forecast, when it wakes up or starts.
+ *
+ * The answer comes from what is stored on the phone, the network is only used when that is
+ * stale.  A watch asking again within {@link #MIN_REQUEST_INTERVAL_MILLIS} is ignored, it
+ * already got the answer to its last request.
+ */
+public class SunshineWearableListenerService extends WearableListenerService {
+    private static final String LOG_TAG = SunshineWearableListenerService.class.getSimpleName();
+
+    private static final long MIN_REQUEST_INTERVAL_MILLIS = 60 * 1000;
+    // Older than a periodic sync interval, the stored forecast is refreshed first
+    private static final long STALE_AFTER_MILLIS = SunshineSyncAdapter.SYNC_INTERVAL * 1000L;
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        if (!ForecastPayload.REQUEST_PATH.equals(messageEvent.getPath())) {
+            return;
+        }
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        long now = System.currentTimeMillis();
+        String lastRequestKey = getString(R.string.pref_last_wearable_request);
+        long lastRequest = prefs.getLong(lastRequestKey, 0);
+        if (now >= lastRequest && now - lastRequest < MIN_REQUEST_INTERVAL_MILLIS) {
+            Log.d(LOG_TAG, "Ignoring forecast request from " + messageEvent.getSourceNodeId());
+            return;
+        }
+        prefs.edit().putLong(lastRequestKey, now).apply();
+
+        // Called on a background thread, the query is fine here
+        ForecastSnapshot snapshot = ForecastSnapshotCache.get(this,
+                Utility.getPreferredLocation(this), now);
+        int days = snapshot != null ? snapshot.size() : 0;
+        long lastSync = prefs.getLong(getString(R.string.pref_last_sync), 0);
+        boolean stale = days == 0 || now - lastSync > STALE_AFTER_MILLIS || now < lastSync;
+        Log.d(LOG_TAG, "Forecast request from " + messageEvent.getSourceNodeId() + ", "
+                + days + " days stored" + (stale ? ", syncing" : ""));
+
+        // Whatever is stored goes out right away, even if it was pushed before: the watch asked,
+        // so it may not have it
+        SunshineSyncAdapter.notifyWearable(this, snapshot, true);
+        if (stale) {
+            // The sync pushes the fresh forecast to the watch once it's stored
+            SunshineSyncAdapter.syncImmediately(this);
+        }
+    }
+}
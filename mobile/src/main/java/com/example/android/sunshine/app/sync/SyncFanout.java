@@ -0,0 +1,111 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs whatever has to happen once a sync has committed its data (widgets, Muzei, the
+ * notification, the wearable) off the sync thread, concurrently, each with its own timeout.
+ *
+ * A consumer still running when its timeout expires is interrupted and logged, so one slow
+ * consumer, like the notification waiting on its large icon, can't keep the others waiting.
+ * The sync adapter doesn't wait for them, onPerformSync returns as soon as the data is
+ * committed.  Until every consumer has finished or timed out, {@link SyncFanoutService} keeps
+ * the process alive.
+ */
+final class SyncFanout {
+    private static final String LOG_TAG = SyncFanout.class.getSimpleName();
+
+    private static final int MAX_THREADS = 4;
+    // Idle threads go away after this, syncs are hours apart
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor sExecutor;
+    private static final ScheduledThreadPoolExecutor sWatchdog;
+
+    static {
+        sExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("SyncFanout"));
+        sExecutor.allowCoreThreadTimeOut(true);
+        sWatchdog = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("SyncFanoutWatchdog"));
+        sWatchdog.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        sWatchdog.allowCoreThreadTimeOut(true);
+    }
+
+    private SyncFanout() {
+    }
+
+    /**
+     * Starts a consumer and returns right away.
+     *
+     * @param name used in the log
+     * @param timeoutMillis how long the consumer may run before it is interrupted
+     * @return the consumer, done once it has finished or timed out
+     */
+    static Future<?> dispatch(Context context, final String name, final Runnable consumer,
+                              long timeoutMillis) {
+        final Context appContext = context.getApplicationContext();
+        SyncFanoutService.hold(appContext);
+        final FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    consumer.run();
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, name + " failed", e);
+                }
+                Log.d(LOG_TAG, name + " took "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // Called once, whether the consumer finished, failed or was cancelled, even
+                // before it started
+                SyncFanoutService.release(appContext);
+            }
+        };
+        sExecutor.execute(future);
+        sWatchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (future.cancel(true)) {
+                    Log.w(LOG_TAG, name + " timed out");
+                }
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + "-" + mCount.incrementAndGet());
+        }
+    }
+}
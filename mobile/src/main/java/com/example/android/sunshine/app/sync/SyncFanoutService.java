@@ -0,0 +1,61 @@
+package com.example.android.sunshine.app.sync;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * Keeps the process alive while the work that follows a sync is still running, after
+ * onPerformSync has returned.
+ *
+ * It does nothing itself: whoever starts post-sync work {@link #hold}s it, and the service
+ * stays started until the last hold is {@link #release}d.  A process with a started service
+ * isn't killed like an idle one, so the widgets, Muzei, the notification and the wearable push
+ * get to finish without the sync thread waiting on them.
+ */
+public class SyncFanoutService extends Service {
+
+    private static final Object sLock = new Object();
+    // guarded by sLock
+    private static int sHolds;
+
+    static void hold(Context context) {
+        synchronized (sLock) {
+            if (sHolds++ == 0) {
+                context.startService(new Intent(context, SyncFanoutService.class));
+            }
+        }
+    }
+
+    static void release(Context context) {
+        synchronized (sLock) {
+            if (sHolds == 0) {
+                throw new IllegalStateException("release() without hold()");
+            }
+            if (--sHolds == 0) {
+                context.stopService(new Intent(context, SyncFanoutService.class));
+            }
+        }
+    }
+
+    /**
+     * @return how many holds haven't been released yet.
+     */
+    static int getHoldCount() {
+        synchronized (sLock) {
+            return sHolds;
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Nothing to redo if the process dies anyway, the next sync pushes everything again
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
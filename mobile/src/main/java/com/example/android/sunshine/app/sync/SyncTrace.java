@@ -0,0 +1,114 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Where the time of one sync went, phase by phase.
+ *
+ * The network phases are added up over every location fetched, so when several locations are
+ * fetched in parallel they can add up to more than the fetch wall time.  Download is the time
+ * spent waiting on the socket while the response was read, parse is the rest of the time the
+ * parser took.  The widget, Muzei, notification and wear phases are the time the sync thread
+ * spent handing them to {@link SyncFanout}; how long they ran is logged by the fan-out.
+ * written and notified are the weather rows the provider actually wrote and the changes it
+ * told observers about, both 0 when a sync only got the forecast it already had.
+ */
+final class SyncTrace {
+
+    // DNS lookup and TCP connect
+    static final int PHASE_CONNECT = 0;
+    // From the request going out until the status line and headers are in
+    static final int PHASE_FIRST_BYTE = 1;
+    static final int PHASE_DOWNLOAD = 2;
+    static final int PHASE_PARSE = 3;
+    // Wall time of all the fetches together, network and parsing
+    static final int PHASE_FETCH = 4;
+    static final int PHASE_ADD_LOCATION = 5;
+    static final int PHASE_BULK_INSERT = 6;
+    static final int PHASE_DELETE = 7;
+    static final int PHASE_SNAPSHOT = 8;
+    static final int PHASE_WIDGETS = 9;
+    static final int PHASE_MUZEI = 10;
+    static final int PHASE_NOTIFICATION = 11;
+    static final int PHASE_WEAR = 12;
+
+    // these names must match the phases above
+    private static final String[] PHASE_NAMES = {
+            "connect",
+            "firstByte",
+            "download",
+            "parse",
+            "fetch",
+            "addLocation",
+            "bulkInsert",
+            "delete",
+            "snapshot",
+            "widgets",
+            "muzei",
+            "notification",
+            "wear"
+    };
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final long mStartTime = System.currentTimeMillis();
+    private final long mStartNanos = System.nanoTime();
+    private final long[] mPhaseNanos = new long[PHASE_NAMES.length];
+    private long mDownloadBytes;
+    private int mRowsWritten;
+    private int mNotifications;
+    private int mLocations;
+    private long mTotalNanos;
+
+    /**
+     * Adds time to a phase, fetches running in parallel may call this at the same time.
+     */
+    synchronized void add(int phase, long nanos) {
+        mPhaseNanos[phase] += nanos;
+    }
+
+    synchronized void addDownloadBytes(long bytes) {
+        mDownloadBytes += bytes;
+    }
+
+    synchronized void setWrites(int rowsWritten, int notifications) {
+        mRowsWritten = rowsWritten;
+        mNotifications = notifications;
+    }
+
+    synchronized void finish(int locations) {
+        mLocations = locations;
+        mTotalNanos = System.nanoTime() - mStartNanos;
+    }
+
+    synchronized void dump(PrintWriter writer) {
+        writer.print(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date(mStartTime)));
+        writer.print(' ');
+        writer.println(toString());
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("total=");
+        appendMillis(builder, mTotalNanos);
+        builder.append(" locations=").append(mLocations);
+        builder.append(" bytes=").append(mDownloadBytes);
+        builder.append(" written=").append(mRowsWritten);
+        builder.append(" notified=").append(mNotifications);
+        for (int i = 0; i < PHASE_NAMES.length; i++) {
+            builder.append(' ').append(PHASE_NAMES[i]).append('=');
+            appendMillis(builder, mPhaseNanos[i]);
+        }
+        return builder.toString();
+    }
+
+    private static void appendMillis(StringBuilder builder, long nanos) {
+        // Milliseconds with one decimal, a parse or an update can take well under 1ms
+        long tenths = nanos / (NANOS_PER_MILLI / 10);
+        builder.append(tenths / 10).append('.').append(tenths % 10).append("ms");
+    }
+}
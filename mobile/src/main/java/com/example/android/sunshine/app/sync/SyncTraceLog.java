@@ -0,0 +1,40 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.PrintWriter;
+
+/**
+ * Keeps the {@link SyncTrace}s of the last few syncs in memory.  They can be read with
+ * <pre>adb shell dumpsys activity service com.example.android.sunshine.app/.sync.SunshineSyncService</pre>
+ */
+final class SyncTraceLog {
+
+    private static final int CAPACITY = 20;
+
+    private static final SyncTrace[] sTraces = new SyncTrace[CAPACITY];
+    // Where the next trace goes, once the buffer is full that's also the oldest one
+    private static int sNext;
+    private static int sCount;
+
+    private SyncTraceLog() {
+    }
+
+    static synchronized void add(SyncTrace trace) {
+        sTraces[sNext] = trace;
+        sNext = (sNext + 1) % CAPACITY;
+        if (sCount < CAPACITY) {
+            sCount++;
+        }
+    }
+
+    /**
+     * Prints the traces, oldest first.
+     */
+    static synchronized void dump(PrintWriter writer) {
+        writer.println("Last " + sCount + " syncs:");
+        int first = (sNext - sCount + CAPACITY) % CAPACITY;
+        for (int i = 0; i < sCount; i++) {
+            writer.print("  ");
+            sTraces[(first + i) % CAPACITY].dump(writer);
+        }
+    }
+}
@@ -21,34 +21,40 @@ import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
-import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.data.WeatherContract;
 
 /**
- * IntentService which handles updating all Today widgets with the latest data
+ * IntentService which handles updating all Today widgets with the latest data, and telling the
+ * Detail widgets when their list has to be loaded again.
+ *
+ * Both widgets are fed by the same {@link WidgetRenderer}, rendered once per data update.  A
+ * widget already showing what was rendered is not updated again, so the second of the two
+ * providers asking after a sync costs nothing.
  */
 public class TodayWidgetIntentService extends IntentService {
-    private static final String[] FORECAST_COLUMNS = {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+
+    // The layouts of the today widget, from the narrowest up
+    private static final int[] TODAY_LAYOUTS = {
+            R.layout.widget_today_small,
+            R.layout.widget_today,
+            R.layout.widget_today_large
     };
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_SHORT_DESC = 1;
-    private static final int INDEX_MAX_TEMP = 2;
-    private static final int INDEX_MIN_TEMP = 3;
+
+    // What each today widget and the detail widgets last got, only touched on the worker thread
+    private static final SparseIntArray sTodayContent = new SparseIntArray();
+    private static int sDetailContent;
+    private static boolean sDetailNotified;
+    // Whether there was a forecast when the detail widgets were last told to reload
+    private static boolean sDetailHadData;
 
     public TodayWidgetIntentService() {
         super("TodayWidgetIntentService");
@@ -56,69 +62,96 @@ public class TodayWidgetIntentService extends IntentService {
 
     @Override
     protected void onHandleIntent(Intent intent) {
-        // Retrieve all of the Today widget ids: these are the widgets we need to update
+        long start = System.nanoTime();
+        // Today's data, shared with everything else that shows the forecast after a sync
+        WidgetRenderer forecast = WidgetRenderer.get(this);
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
-        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
-                TodayWidgetProvider.class));
-
-        // Get today's data from the ContentProvider
-        String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (data == null) {
-            return;
-        }
-        if (!data.moveToFirst()) {
-            data.close();
+        if (forecast == null) {
+            // The detail list empties itself when it loads, the today widgets keep what they show
+            if (!sDetailNotified || sDetailHadData) {
+                notifyDetailWidgets(appWidgetManager);
+                sDetailNotified = true;
+                sDetailHadData = false;
+                Log.d(WidgetRenderer.LOG_TAG, "No forecast, emptied the detail widgets");
+            }
             return;
         }
+        int contentHash = forecast.getContentHash();
 
-        // Extract the weather data from the Cursor
-        int weatherId = data.getInt(INDEX_WEATHER_ID);
-        int weatherArtResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-        String description = data.getString(INDEX_SHORT_DESC);
-        double maxTemp = data.getDouble(INDEX_MAX_TEMP);
-        double minTemp = data.getDouble(INDEX_MIN_TEMP);
-        String formattedMaxTemperature = Utility.formatTemperature(this, maxTemp);
-        String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
-        data.close();
-
-        // Perform this loop procedure for each Today widget
+        // Retrieve all of the Today widget ids: these are the widgets we need to update
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
+                TodayWidgetProvider.class));
+        // Widgets of the same size share one RemoteViews
+        RemoteViews[] viewsByLayout = new RemoteViews[TODAY_LAYOUTS.length];
+        int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+        int updated = 0;
         for (int appWidgetId : appWidgetIds) {
-            // Find the correct layout based on the widget's width
+            // Find the correct layout based on the widget's width, as an index into TODAY_LAYOUTS
             int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
-            int layoutId;
+            int layout;
             if (widgetWidth >= largeWidth) {
-                layoutId = R.layout.widget_today_large;
+                layout = 2;
             } else if (widgetWidth >= defaultWidth) {
-                layoutId = R.layout.widget_today;
+                layout = 1;
             } else {
-                layoutId = R.layout.widget_today_small;
+                layout = 0;
             }
-            RemoteViews views = new RemoteViews(getPackageName(), layoutId);
-
-            // Add the data to the RemoteViews
-            views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
-            // Content Descriptions for RemoteViews were only added in ICS MR1
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-                setRemoteContentDescription(views, description);
+            int content = 31 * contentHash + TODAY_LAYOUTS[layout];
+            int index = sTodayContent.indexOfKey(appWidgetId);
+            if (index >= 0 && sTodayContent.valueAt(index) == content) {
+                continue;
+            }
+            if (viewsByLayout[layout] == null) {
+                viewsByLayout[layout] = buildTodayViews(forecast, TODAY_LAYOUTS[layout]);
             }
-            views.setTextViewText(R.id.widget_description, description);
-            views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
-            views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+            // Tell the AppWidgetManager to perform an update on the current app widget
+            appWidgetManager.updateAppWidget(appWidgetId, viewsByLayout[layout]);
+            sTodayContent.put(appWidgetId, content);
+            updated++;
+        }
 
-            // Create an Intent to launch MainActivity
-            Intent launchIntent = new Intent(this, MainActivity.class);
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
-            views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+        // The Detail widgets build their rows themselves, from the same render.  The hash is
+        // only worth comparing if they last loaded a forecast too.
+        boolean detailChanged = !sDetailNotified || !sDetailHadData
+                || sDetailContent != contentHash;
+        if (detailChanged) {
+            notifyDetailWidgets(appWidgetManager);
+            sDetailContent = contentHash;
+            sDetailNotified = true;
+            sDetailHadData = true;
+        }
 
-            // Tell the AppWidgetManager to perform an update on the current app widget
-            appWidgetManager.updateAppWidget(appWidgetId, views);
+        Log.d(WidgetRenderer.LOG_TAG, "Updated " + updated + " of " + appWidgetIds.length
+                + " today widgets" + (detailChanged ? " and the detail widgets" : "") + " in "
+                + (System.nanoTime() - start) / 1000000L + "ms");
+    }
+
+    private void notifyDetailWidgets(AppWidgetManager appWidgetManager) {
+        int[] detailWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
+                DetailWidgetProvider.class));
+        appWidgetManager.notifyAppWidgetViewDataChanged(detailWidgetIds, R.id.widget_list);
+    }
+
+    private RemoteViews buildTodayViews(WidgetRenderer forecast, int layoutId) {
+        RemoteViews views = new RemoteViews(getPackageName(), layoutId);
+
+        // Add the data to the RemoteViews
+        String description = forecast.getDescription(0);
+        views.setImageViewResource(R.id.widget_icon, forecast.getArtResourceId(0));
+        // Content Descriptions for RemoteViews were only added in ICS MR1
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+            setRemoteContentDescription(views, description);
         }
+        views.setTextViewText(R.id.widget_description, description);
+        views.setTextViewText(R.id.widget_high_temperature, forecast.getHigh(0));
+        views.setTextViewText(R.id.widget_low_temperature, forecast.getLow(0));
+
+        // Create an Intent to launch MainActivity
+        Intent launchIntent = new Intent(this, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
+        views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+        return views;
     }
 
     private int getWidgetWidth(AppWidgetManager appWidgetManager, int appWidgetId) {
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
+import com.example.android.sunshine.app.SunshineSettings;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.ForecastSnapshotCache;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.DayLabelFormatter;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The forecast as the widgets show it, rendered once per data update for the today and the
+ * detail widget alike.
+ *
+ * Every text, icon, piece of art and click Uri is worked out from one snapshot and one set of
+ * settings, and a hash of all of it is kept, so nothing is pushed to a widget that already shows
+ * the same.  Renders never change once built and may be shared between threads.
+ *
+ * Call {@link #get} on a background thread, it may query the provider and load art.
+ */
+final class WidgetRenderer {
+
+    static final String LOG_TAG = WidgetRenderer.class.getSimpleName();
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static final Object sLock = new Object();
+    // guarded by sLock
+    private static WidgetRenderer sCurrent;
+
+    // What this was rendered from, a new snapshot or new settings need a new render
+    private final ForecastSnapshot mSnapshot;
+    private final SunshineSettings mSettings;
+
+    private final String[] mDayLabels;
+    private final String[] mHighs;
+    private final String[] mLows;
+    private final int[] mIconResourceIds;
+    private final int[] mArtResourceIds;
+    // Art pack art, null where the local icon is shown
+    private final Bitmap[] mArt;
+    private final Uri[] mDetailUris;
+    private final int mContentHash;
+
+    private WidgetRenderer(Context context, ForecastSnapshot snapshot, SunshineSettings settings) {
+        mSnapshot = snapshot;
+        mSettings = settings;
+        int size = snapshot.size();
+        mDayLabels = new String[size];
+        mHighs = new String[size];
+        mLows = new String[size];
+        mIconResourceIds = new int[size];
+        mArtResourceIds = new int[size];
+        mArt = new Bitmap[size];
+        mDetailUris = new Uri[size];
+
+        DayLabelFormatter dayLabels = settings.getDayLabelFormatter();
+        // Every category's art is loaded at most once, however many days show it
+        Bitmap[] artByCategory = new Bitmap[WeatherConditions.CATEGORY_COUNT];
+        boolean[] artLoaded = new boolean[WeatherConditions.CATEGORY_COUNT];
+        int hash = settings.getArtPack().hashCode();
+        for (int i = 0; i < size; i++) {
+            int weatherId = snapshot.getWeatherId(i);
+            mDayLabels[i] = dayLabels.getDayLabel(snapshot.getDate(i), false);
+            mHighs[i] = settings.formatTemperature(snapshot.getMaxTemp(i));
+            mLows[i] = settings.formatTemperature(snapshot.getMinTemp(i));
+            mIconResourceIds[i] = Utility.getIconResourceForWeatherCondition(weatherId);
+            mArtResourceIds[i] = Utility.getArtResourceForWeatherCondition(weatherId);
+            if (!settings.usingLocalGraphics()) {
+                int category = WeatherConditions.getCategory(weatherId);
+                if (!artLoaded[category]) {
+                    artByCategory[category] = loadArt(context, settings.getArtUrl(category),
+                            mIconResourceIds[i]);
+                    artLoaded[category] = true;
+                }
+                mArt[i] = artByCategory[category];
+            }
+            mDetailUris[i] = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                    snapshot.getLocationSetting(), snapshot.getDate(i));
+
+            hash = 31 * hash + (int) (snapshot.getId(i) ^ (snapshot.getId(i) >>> 32));
+            hash = 31 * hash + mDayLabels[i].hashCode();
+            hash = 31 * hash + hashOf(snapshot.getShortDesc(i));
+            hash = 31 * hash + mHighs[i].hashCode();
+            hash = 31 * hash + mLows[i].hashCode();
+            hash = 31 * hash + mIconResourceIds[i];
+            hash = 31 * hash + (mArt[i] != null ? 1 : 0);
+            hash = 31 * hash + mDetailUris[i].hashCode();
+        }
+        mContentHash = hash;
+    }
+
+    /**
+     * @return the forecast of the preferred location from today on, rendered for the widgets.
+     * null if there is none.
+     */
+    static WidgetRenderer get(Context context) {
+        long start = System.nanoTime();
+        SunshineSettings settings = SunshineSettings.get(context);
+        // After a sync this is usually the snapshot the sync adapter already loaded
+        ForecastSnapshot snapshot = ForecastSnapshotCache.get(context,
+                settings.getPreferredLocation(), System.currentTimeMillis());
+        if (snapshot == null || snapshot.size() == 0) {
+            return null;
+        }
+        synchronized (sLock) {
+            // The snapshot cache hands out the same snapshot until the data or the day changes
+            if (sCurrent != null && sCurrent.mSnapshot == snapshot
+                    && sCurrent.mSettings == settings) {
+                return sCurrent;
+            }
+            // Rendering under the lock, so both widgets asking at once render only once
+            sCurrent = new WidgetRenderer(context, snapshot, settings);
+            Log.d(LOG_TAG, "Rendered " + snapshot.size() + " days in "
+                    + (System.nanoTime() - start) / NANOS_PER_MILLI + "ms");
+            return sCurrent;
+        }
+    }
+
+    private static Bitmap loadArt(Context context, String url, int errorResourceId) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            return Glide.with(context)
+                    .load(url)
+                    .asBitmap()
+                    .error(errorResourceId)
+                    .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving large icon from " + url, e);
+            return null;
+        }
+    }
+
+    private static int hashOf(String s) {
+        return s != null ? s.hashCode() : 0;
+    }
+
+    /**
+     * @return a hash of everything the widgets show, equal for renders that look the same
+     */
+    int getContentHash() {
+        return mContentHash;
+    }
+
+    int size() {
+        return mSnapshot.size();
+    }
+
+    long getId(int i) {
+        return mSnapshot.getId(i);
+    }
+
+    String getDayLabel(int i) {
+        return mDayLabels[i];
+    }
+
+    String getDescription(int i) {
+        return mSnapshot.getShortDesc(i);
+    }
+
+    String getHigh(int i) {
+        return mHighs[i];
+    }
+
+    String getLow(int i) {
+        return mLows[i];
+    }
+
+    /**
+     * @return the small icon of the day, -1 if there is none
+     */
+    int getIconResourceId(int i) {
+        return mIconResourceIds[i];
+    }
+
+    /**
+     * @return the large art of the day, -1 if there is none
+     */
+    int getArtResourceId(int i) {
+        return mArtResourceIds[i];
+    }
+
+    /**
+     * @return the art pack's art of the day, null if the local icon is to be shown
+     */
+    Bitmap getArt(int i) {
+        return mArt[i];
+    }
+
+    /**
+     * @return the Uri the detail widget opens for the day
+     */
+    Uri getDetailUri(int i) {
+        return mDetailUris[i];
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Applies {@link ForecastDiff}s to a simulated list and checks it ends up showing the new rows,
+ * each bound at the position it is shown at.
+ */
+public class ForecastDiffTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long TODAY = 1462000000000L;
+
+    @Test
+    public void firstLoad() {
+        assertUpdates(null, null, days(0, 14), hashes(14, 0), 14);
+    }
+
+    @Test
+    public void unchanged() {
+        assertUpdates(days(0, 14), hashes(14, 0), days(0, 14), hashes(14, 0), 0);
+    }
+
+    @Test
+    public void empty() {
+        assertUpdates(new long[0], new int[0], new long[0], new int[0], 0);
+        assertUpdates(new long[0], new int[0], days(0, 14), hashes(14, 0), 14);
+        assertUpdates(days(0, 14), hashes(14, 0), new long[0], new int[0], 0);
+    }
+
+    @Test
+    public void changedRows() {
+        for (int position : new int[] {0, 7, 13}) {
+            int[] changed = hashes(14, 0);
+            changed[position]++;
+            assertUpdates(days(0, 14), hashes(14, 0), days(0, 14), changed, 1);
+        }
+    }
+
+    @Test
+    public void insertedRows() {
+        // At the head every row moves, at the tail none does
+        assertUpdates(days(1, 13), hashes(13, 1), days(0, 14), hashes(14, 0), 14);
+        assertUpdates(days(0, 13), hashes(13, 0), days(0, 14), hashes(14, 0), 1);
+
+        long[] gap = remove(days(0, 14), 7);
+        int[] gapHashes = remove(hashes(14, 0), 7);
+        // The inserted row, and the ones after it that moved down
+        assertUpdates(gap, gapHashes, days(0, 14), hashes(14, 0), 7);
+    }
+
+    @Test
+    public void removedRows() {
+        assertUpdates(days(0, 14), hashes(14, 0), days(1, 13), hashes(13, 1), 13);
+        assertUpdates(days(0, 14), hashes(14, 0), days(0, 13), hashes(13, 0), 0);
+        assertUpdates(days(0, 14), hashes(14, 0), remove(days(0, 14), 7),
+                remove(hashes(14, 0), 7), 6);
+    }
+
+    @Test
+    public void dayRollover() {
+        // Yesterday is gone, a new last day came in, and every row moved up one
+        assertUpdates(days(0, 14), hashes(14, 0), days(1, 14), hashes(14, 1), 14);
+    }
+
+    @Test
+    public void everythingAtOnce() {
+        long[] dates = remove(days(1, 15), 5);
+        int[] changed = remove(hashes(15, 1), 5);
+        changed[2]++;
+        changed[10]++;
+        assertUpdates(days(0, 14), hashes(14, 0), dates, changed, 14);
+    }
+
+    /**
+     * @param expectedUpdates how many rows must be bound again, no more
+     */
+    private static void assertUpdates(long[] baseDates, int[] baseHashes, long[] dates,
+                                      int[] hashes, int expectedUpdates) {
+        final List<Row> list = new ArrayList<Row>();
+        if (baseDates != null) {
+            for (int i = 0; i < baseDates.length; i++) {
+                list.add(new Row(baseDates[i], baseHashes[i], i));
+            }
+        }
+
+        final long[] newDates = dates;
+        final int[] newHashes = hashes;
+        final int[] bound = {0};
+        ForecastDiff diff = new ForecastDiff(baseDates, baseHashes, dates, hashes);
+        diff.dispatchUpdatesTo(new ForecastDiff.Listener() {
+            @Override
+            public void onRemoved(int position) {
+                list.remove(position);
+            }
+
+            @Override
+            public void onInserted(int position) {
+                list.add(position, null);
+                bind(position);
+            }
+
+            @Override
+            public void onChanged(int position) {
+                bind(position);
+            }
+
+            // What the adapter does for an inserted or changed row
+            private void bind(int position) {
+                list.set(position, new Row(newDates[position], newHashes[position], position));
+                bound[0]++;
+            }
+        });
+
+        assertEquals(dates.length, list.size());
+        for (int i = 0; i < dates.length; i++) {
+            Row row = list.get(i);
+            assertEquals("date at " + i, dates[i], row.date);
+            assertEquals("hash at " + i, hashes[i], row.hash);
+            assertEquals("row at " + i + " was bound at", i, row.boundPosition);
+        }
+        assertEquals(expectedUpdates, bound[0]);
+        assertEquals(expectedUpdates, diff.getUpdateCount());
+    }
+
+    private static long[] days(int first, int count) {
+        long[] dates = new long[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = TODAY + (first + i) * DAY;
+        }
+        return dates;
+    }
+
+    /**
+     * @return a hash per day, the same for the same day whatever first is
+     */
+    private static int[] hashes(int count, int first) {
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = 31 * (first + i) + 17;
+        }
+        return hashes;
+    }
+
+    private static long[] remove(long[] array, int index) {
+        long[] removed = new long[array.length - 1];
+        System.arraycopy(array, 0, removed, 0, index);
+        System.arraycopy(array, index + 1, removed, index, array.length - index - 1);
+        return removed;
+    }
+
+    private static int[] remove(int[] array, int index) {
+        int[] removed = new int[array.length - 1];
+        System.arraycopy(array, 0, removed, 0, index);
+        System.arraycopy(array, index + 1, removed, index, array.length - index - 1);
+        return removed;
+    }
+
+    private static class Row {
+        final long date;
+        final int hash;
+        final int boundPosition;
+
+        Row(long date, int hash, int boundPosition) {
+            this.date = date;
+            this.hash = hash;
+            this.boundPosition = boundPosition;
+        }
+    }
+}
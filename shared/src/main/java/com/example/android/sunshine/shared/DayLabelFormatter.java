@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Labels the days of the forecast:
+ * For today: "Today, June 8"
+ * For tomorrow:  "Tomorrow"
+ * For the next 5 days: "Wednesday" (just the day name)
+ * For all days after that: "Mon Jun 8"
+ * The day name and the month and day it is made of are available on their own too.
+ *
+ * Every label of every day from today on is formatted once and kept until midnight, so
+ * labelling a forecast again, as the list, the widgets and the detail view do after every sync,
+ * neither allocates nor goes through SimpleDateFormat.  Safe to share between threads.
+ *
+ * The time zone is read when the day starts, a change of it shows from the next day on.
+ * Plain java.util rather than android.text.format.Time, so it can be unit tested off the device.
+ */
+public final class DayLabelFormatter {
+
+    // Days from today on with cached labels, enough for every forecast the phone keeps
+    private static final int CACHED_DAYS = ForecastPayload.MAX_DAYS;
+    // Days from today on labelled with just the day name
+    private static final int DAY_NAME_DAYS = 7;
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    // Julian day of 1970-01-01, as in android.text.format.Time
+    private static final int EPOCH_JULIAN_DAY = 2440588;
+
+    private final String mToday;
+    private final String mTomorrow;
+    private final String mFullFriendlyDateFormat;
+
+    // guarded by themselves, SimpleDateFormat is not thread safe
+    private final SimpleDateFormat mDayNameFormat;
+    private final SimpleDateFormat mMonthDayFormat;
+    private final SimpleDateFormat mShortDateFormat;
+
+    private volatile Week mWeek;
+
+    /**
+     * The labels of the days from today on, valid until the day ends.
+     */
+    private static final class Week {
+        final int today;
+        final long gmtoffMillis;
+        final long startMillis;
+        final long endMillis;
+        // Filled in the first time each is needed.  Threads racing there format the same
+        // label, either one may be kept.
+        final String[] labels = new String[CACHED_DAYS];
+        final String[] dayNames = new String[CACHED_DAYS];
+        final String[] monthDays = new String[CACHED_DAYS];
+        final String[] fullFriendlyDays = new String[CACHED_DAYS];
+
+        Week(int today, long gmtoffMillis) {
+            this.today = today;
+            this.gmtoffMillis = gmtoffMillis;
+            this.startMillis = (today - EPOCH_JULIAN_DAY) * DAY_IN_MILLIS - gmtoffMillis;
+            this.endMillis = startMillis + DAY_IN_MILLIS;
+        }
+    }
+
+    /**
+     * @param today localized "Today"
+     * @param tomorrow localized "Tomorrow"
+     * @param fullFriendlyDateFormat format of the long label of a day, with a %1$s for the day
+     *                               name and a %2$s for the month and day
+     */
+    public DayLabelFormatter(Locale locale, String today, String tomorrow,
+                             String fullFriendlyDateFormat) {
+        mToday = today;
+        mTomorrow = tomorrow;
+        mFullFriendlyDateFormat = fullFriendlyDateFormat;
+        mDayNameFormat = new SimpleDateFormat("EEEE", locale);
+        mMonthDayFormat = new SimpleDateFormat("MMMM dd", locale);
+        mShortDateFormat = new SimpleDateFormat("EEE MMM dd", locale);
+    }
+
+    /**
+     * @param dateInMillis the date, as stored
+     * @param displayLongToday whether today is labelled with its date as well
+     * @return the label.  For the days from today on this is the same String every time.
+     */
+    public String getDayLabel(long dateInMillis, boolean displayLongToday) {
+        Week week = getWeek();
+        int day = getDay(week, dateInMillis);
+        if (day == 0 && displayLongToday) {
+            return getFullFriendlyDayString(week, day, dateInMillis);
+        }
+        if (day < 0 || day >= CACHED_DAYS) {
+            // Before today only happens for a forecast that is out of date
+            return format(day < DAY_NAME_DAYS ? mDayNameFormat : mShortDateFormat, dateInMillis);
+        }
+        String label = week.labels[day];
+        if (label == null) {
+            if (day < DAY_NAME_DAYS) {
+                label = getDayName(week, day, dateInMillis);
+            } else {
+                label = format(mShortDateFormat, getMidday(week, day));
+            }
+            week.labels[day] = label;
+        }
+        return label;
+    }
+
+    /**
+     * Appends what {@link #getDayLabel} returns.
+     *
+     * @return out, for chaining
+     */
+    public StringBuilder appendDayLabel(StringBuilder out, long dateInMillis,
+                                        boolean displayLongToday) {
+        return out.append(getDayLabel(dateInMillis, displayLongToday));
+    }
+
+    /**
+     * @return "Today", "Tomorrow" or the name of the day of the week, e.g. "Wednesday".
+     */
+    public String getDayName(long dateInMillis) {
+        Week week = getWeek();
+        return getDayName(week, getDay(week, dateInMillis), dateInMillis);
+    }
+
+    /**
+     * @return the month and day, e.g. "June 24".
+     */
+    public String getMonthDay(long dateInMillis) {
+        Week week = getWeek();
+        return getMonthDay(week, getDay(week, dateInMillis), dateInMillis);
+    }
+
+    /**
+     * @return the day name with the month and day, e.g. "Tomorrow, June 24", as the detail view
+     * shows every day.
+     */
+    public String getFullFriendlyDayString(long dateInMillis) {
+        Week week = getWeek();
+        return getFullFriendlyDayString(week, getDay(week, dateInMillis), dateInMillis);
+    }
+
+    private String getMonthDay(Week week, int day, long dateInMillis) {
+        if (day < 0 || day >= CACHED_DAYS) {
+            return format(mMonthDayFormat, dateInMillis);
+        }
+        String monthDay = week.monthDays[day];
+        if (monthDay == null) {
+            monthDay = format(mMonthDayFormat, getMidday(week, day));
+            week.monthDays[day] = monthDay;
+        }
+        return monthDay;
+    }
+
+    private String getDayName(Week week, int day, long dateInMillis) {
+        if (day < 0 || day >= CACHED_DAYS) {
+            return format(mDayNameFormat, dateInMillis);
+        }
+        String dayName = week.dayNames[day];
+        if (dayName == null) {
+            if (day == 0) {
+                dayName = mToday;
+            } else if (day == 1) {
+                dayName = mTomorrow;
+            } else {
+                dayName = format(mDayNameFormat, getMidday(week, day));
+            }
+            week.dayNames[day] = dayName;
+        }
+        return dayName;
+    }
+
+    private String getFullFriendlyDayString(Week week, int day, long dateInMillis) {
+        if (day >= 0 && day < CACHED_DAYS && week.fullFriendlyDays[day] != null) {
+            return week.fullFriendlyDays[day];
+        }
+        String fullFriendlyDay = String.format(mFullFriendlyDateFormat,
+                getDayName(week, day, dateInMillis), getMonthDay(week, day, dateInMillis));
+        if (day >= 0 && day < CACHED_DAYS) {
+            week.fullFriendlyDays[day] = fullFriendlyDay;
+        }
+        return fullFriendlyDay;
+    }
+
+    private Week getWeek() {
+        Week week = mWeek;
+        long now = System.currentTimeMillis();
+        if (week != null && now >= week.startMillis && now < week.endMillis) {
+            return week;
+        }
+        long gmtoffMillis = TimeZone.getDefault().getOffset(now);
+        week = new Week(getJulianDay(now, gmtoffMillis), gmtoffMillis);
+        mWeek = week;
+        return week;
+    }
+
+    /**
+     * @return the day of the date, counted from today
+     */
+    private static int getDay(Week week, long dateInMillis) {
+        return getJulianDay(dateInMillis, week.gmtoffMillis) - week.today;
+    }
+
+    /**
+     * Midday, so a change to or from daylight saving time can't move it to another day.
+     */
+    private static long getMidday(Week week, int day) {
+        return week.startMillis + day * DAY_IN_MILLIS + DAY_IN_MILLIS / 2;
+    }
+
+    /**
+     * Time.getJulianDay(millis, gmtoff), with the offset in milliseconds.
+     */
+    private static int getJulianDay(long millis, long gmtoffMillis) {
+        long localMillis = millis + gmtoffMillis;
+        long days = localMillis / DAY_IN_MILLIS;
+        if (localMillis < 0 && days * DAY_IN_MILLIS != localMillis) {
+            days--;
+        }
+        return (int) days + EPOCH_JULIAN_DAY;
+    }
+
+    private static String format(SimpleDateFormat format, long dateInMillis) {
+        synchronized (format) {
+            return format.format(dateInMillis);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * The forecast the phone sends to the watch, as a compact byte array.
+ *
+ * Layout, big endian:
+ * <pre>
+ * byte  version
+ * byte  flags, {@link #FLAG_IMPERIAL}
+ * int   julian day of the first day
+ * byte  number of days
+ * per day:
+ *   byte  days since the first day
+ *   short weather condition id
+ *   short high, tenths of a degree Celsius
+ *   short low, tenths of a degree Celsius
+ * </pre>
+ * 14 days take 105 bytes.
+ *
+ * {@link #encode} is used on the phone.  The watch keeps one instance and {@link #decode}s every
+ * payload it receives into it, which allocates nothing, so the values can be read while drawing.
+ * The days are local to the default time zone when the instance is created; call
+ * {@link #setTimeZone} when it changes.
+ */
+public final class ForecastPayload {
+
+    // DataItem path and key the payload is sent on
+    public static final String PATH = "/forecast-data";
+    public static final String KEY_PAYLOAD = "payload";
+    // Message path the watch asks the phone for the forecast on, the phone answers on PATH
+    public static final String REQUEST_PATH = "/forecast-request";
+
+    public static final int MAX_DAYS = 16;
+
+    // Temperatures are in Celsius, show them in Fahrenheit
+    public static final int FLAG_IMPERIAL = 1;
+
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 7;
+    private static final int DAY_SIZE = 7;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    // Julian day of 1970-01-01, as in android.text.format.Time
+    private static final int EPOCH_JULIAN_DAY = 2440588;
+
+    private final int[] mJulianDays = new int[MAX_DAYS];
+    private final long[] mDates = new long[MAX_DAYS];
+    private final int[] mWeatherIds = new int[MAX_DAYS];
+    private final double[] mHighs = new double[MAX_DAYS];
+    private final double[] mLows = new double[MAX_DAYS];
+    // The time zone the days are local to, the default one until setTimeZone is called.
+    // Plain java.util rather than Time, so the payload can be unit tested off the device.
+    private TimeZone mTimeZone = TimeZone.getDefault();
+    private final Calendar mUtcCalendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    private final Calendar mLocalCalendar = new GregorianCalendar(mTimeZone);
+    private int mSize;
+    private int mFlags;
+
+    /**
+     * @param dates normalized dates, in ascending order
+     * @param count how many entries of the arrays to send, at most {@link #MAX_DAYS}
+     */
+    public static byte[] encode(int flags, long[] dates, int[] weatherIds, double[] highs,
+                                double[] lows, int count) {
+        count = Math.min(count, MAX_DAYS);
+        byte[] data = new byte[HEADER_SIZE + count * DAY_SIZE];
+        TimeZone timeZone = TimeZone.getDefault();
+        int startDay = count > 0 ? getJulianDay(timeZone, dates[0]) : 0;
+        data[0] = VERSION;
+        data[1] = (byte) flags;
+        putInt(data, 2, startDay);
+        data[6] = (byte) count;
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            data[offset] = (byte) (getJulianDay(timeZone, dates[i]) - startDay);
+            putShort(data, offset + 1, weatherIds[i]);
+            putShort(data, offset + 3, (int) Math.round(highs[i] * 10));
+            putShort(data, offset + 5, (int) Math.round(lows[i] * 10));
+            offset += DAY_SIZE;
+        }
+        return data;
+    }
+
+    /**
+     * Replaces the content of this instance with the payload.
+     *
+     * @return false, leaving this instance as it was, if the payload can't be read.
+     */
+    public boolean decode(byte[] data) {
+        if (data == null || data.length < HEADER_SIZE || data[0] != VERSION) {
+            return false;
+        }
+        int count = data[6] & 0xff;
+        if (count > MAX_DAYS || data.length < HEADER_SIZE + count * DAY_SIZE) {
+            return false;
+        }
+        mFlags = data[1] & 0xff;
+        int startDay = getInt(data, 2);
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            mJulianDays[i] = startDay + (data[offset] & 0xff);
+            mDates[i] = getStartOfJulianDay(mJulianDays[i]);
+            mWeatherIds[i] = getShort(data, offset + 1);
+            mHighs[i] = getShort(data, offset + 3) / 10.0;
+            mLows[i] = getShort(data, offset + 5) / 10.0;
+            offset += DAY_SIZE;
+        }
+        mSize = count;
+        return true;
+    }
+
+    /**
+     * @return the index of the day the given time falls on, -1 if it isn't in the payload.
+     */
+    public int indexOfDay(long timeMillis) {
+        int julianDay = getJulianDay(mTimeZone, timeMillis);
+        for (int i = 0; i < mSize; i++) {
+            if (mJulianDays[i] == julianDay) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes the days local to another time zone, what the watch does when the time zone changes.
+     * The days stay the same, their start is moved to the new zone.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mLocalCalendar.setTimeZone(timeZone);
+        for (int i = 0; i < mSize; i++) {
+            mDates[i] = getStartOfJulianDay(mJulianDays[i]);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isImperial() {
+        return (mFlags & FLAG_IMPERIAL) != 0;
+    }
+
+    /**
+     * @return the start of the day in local time, like WeatherContract.normalizeDate
+     */
+    public long getDate(int i) {
+        return mDates[i];
+    }
+
+    public int getWeatherId(int i) {
+        return mWeatherIds[i];
+    }
+
+    /**
+     * @return the high in degrees Celsius
+     */
+    public double getHigh(int i) {
+        return mHighs[i];
+    }
+
+    /**
+     * @return the low in degrees Celsius
+     */
+    public double getLow(int i) {
+        return mLows[i];
+    }
+
+    private static void putShort(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static int getShort(byte[] data, int offset) {
+        return (short) (((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff));
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >> 24);
+        data[offset + 1] = (byte) (value >> 16);
+        data[offset + 2] = (byte) (value >> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    /**
+     * Time.getJulianDay(timeMillis, gmtoff) with the offset in effect at timeMillis.
+     */
+    private static int getJulianDay(TimeZone timeZone, long timeMillis) {
+        long localMillis = timeMillis + timeZone.getOffset(timeMillis);
+        long days = localMillis / DAY_MILLIS;
+        if (localMillis < 0 && days * DAY_MILLIS != localMillis) {
+            days--;
+        }
+        return (int) days + EPOCH_JULIAN_DAY;
+    }
+
+    /**
+     * Time.setJulianDay: midnight local time at the start of the day, or the first moment of it
+     * if a daylight saving change skips midnight.
+     */
+    private long getStartOfJulianDay(int julianDay) {
+        mUtcCalendar.setTimeInMillis((julianDay - EPOCH_JULIAN_DAY) * DAY_MILLIS);
+        mLocalCalendar.clear();
+        mLocalCalendar.set(mUtcCalendar.get(Calendar.YEAR), mUtcCalendar.get(Calendar.MONTH),
+                mUtcCalendar.get(Calendar.DAY_OF_MONTH));
+        return mLocalCalendar.getTimeInMillis();
+    }
+}
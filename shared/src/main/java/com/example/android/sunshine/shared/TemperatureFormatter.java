@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats temperatures stored in Celsius the way the "%1.0f" format does, whole degrees
+ * rounded half up, in the units the user picked.
+ *
+ * The digits are appended straight into the caller's StringBuilder, so a row, widget or watch
+ * face formatting many temperatures allocates nothing for them.  Instances never change and may
+ * be shared between threads.
+ */
+public final class TemperatureFormatter {
+
+    public static final String DEGREE = "\u00B0";
+
+    // Past this a double has no fraction left, and the digits no longer fit a long
+    private static final double MAX_DIGITS_VALUE = 1e15;
+
+    private final Locale mLocale;
+    private final boolean mImperial;
+    private final String mSuffix;
+    private final char mZeroDigit;
+
+    /**
+     * @param imperial whether to show Fahrenheit
+     * @param suffix appended after the number, usually {@link #DEGREE}
+     */
+    public TemperatureFormatter(Locale locale, boolean imperial, String suffix) {
+        mLocale = locale;
+        mImperial = imperial;
+        mSuffix = suffix;
+        // String.format writes the digits of the locale too
+        mZeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    public boolean isImperial() {
+        return mImperial;
+    }
+
+    /**
+     * @param celsius the temperature as it is stored
+     * @return out, for chaining
+     */
+    public StringBuilder append(StringBuilder out, double celsius) {
+        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
+        // the values here.
+        double temperature = mImperial ? (celsius * 1.8) + 32 : celsius;
+
+        double magnitude = Math.abs(temperature);
+        if (!(magnitude < MAX_DIGITS_VALUE)) {
+            // NaN and the like, never a real reading
+            return out.append(String.format(mLocale, "%1.0f", temperature)).append(mSuffix);
+        }
+        // For presentation, assume the user doesn't care about tenths of a degree.  The
+        // fraction is taken exactly, adding 0.5 first would round 0.49999999999999994 up.
+        long whole = (long) magnitude;
+        if (magnitude - whole >= 0.5) {
+            whole++;
+        }
+        // Like String.format, anything below zero keeps its sign, "-0" included
+        if (Double.doubleToRawLongBits(temperature) < 0) {
+            out.append('-');
+        }
+        long divisor = 1;
+        while (whole / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) (mZeroDigit + (whole / divisor) % 10));
+        }
+        return out.append(mSuffix);
+    }
+
+    /**
+     * For callers that need a String anyway, {@link #append} allocates nothing.
+     */
+    public String format(double celsius) {
+        return append(new StringBuilder(8), celsius).toString();
+    }
+}
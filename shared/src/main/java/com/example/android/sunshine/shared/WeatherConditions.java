@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Groups OpenWeatherMap condition ids into the few kinds of weather Sunshine has art for.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ *
+ * The phone and the watch map a category to their own icons, art and text with arrays indexed
+ * by it, so no lookup walks a chain of ranges.
+ */
+public final class WeatherConditions {
+
+    public static final int CATEGORY_NONE = 0;
+    public static final int CATEGORY_STORM = 1;
+    public static final int CATEGORY_LIGHT_RAIN = 2;
+    public static final int CATEGORY_RAIN = 3;
+    public static final int CATEGORY_SNOW = 4;
+    public static final int CATEGORY_FOG = 5;
+    // Squalls and tornadoes, shown like a storm
+    public static final int CATEGORY_TORNADO = 6;
+    public static final int CATEGORY_CLEAR = 7;
+    public static final int CATEGORY_LIGHT_CLOUDS = 8;
+    public static final int CATEGORY_CLOUDS = 9;
+    public static final int CATEGORY_COUNT = 10;
+
+    // The condition ids go from 200 to 962
+    public static final int MIN_ID = 200;
+    public static final int MAX_ID = 962;
+
+    // Name of the art of each category in the art packs, null without art
+    private static final String[] ART_NAMES = {
+            null,
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "storm",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    private static final byte[] CATEGORIES = new byte[MAX_ID - MIN_ID + 1];
+
+    static {
+        fill(200, 232, CATEGORY_STORM);
+        fill(300, 321, CATEGORY_LIGHT_RAIN);
+        fill(500, 504, CATEGORY_RAIN);
+        fill(511, 511, CATEGORY_SNOW);
+        fill(520, 531, CATEGORY_RAIN);
+        fill(600, 622, CATEGORY_SNOW);
+        // 761, dust, has always been shown as fog
+        fill(701, 761, CATEGORY_FOG);
+        fill(781, 781, CATEGORY_TORNADO);
+        fill(800, 800, CATEGORY_CLEAR);
+        fill(801, 801, CATEGORY_LIGHT_CLOUDS);
+        fill(802, 804, CATEGORY_CLOUDS);
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void fill(int fromId, int toId, int category) {
+        for (int id = fromId; id <= toId; id++) {
+            CATEGORIES[id - MIN_ID] = (byte) category;
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return one of the CATEGORY_ constants, {@link #CATEGORY_NONE} if there's no art for it.
+     */
+    public static int getCategory(int weatherId) {
+        if (weatherId < MIN_ID || weatherId > MAX_ID) {
+            return CATEGORY_NONE;
+        }
+        return CATEGORIES[weatherId - MIN_ID];
+    }
+
+    /**
+     * @return the name of the category's art in the art packs, null for {@link #CATEGORY_NONE}.
+     */
+    public static String getArtName(int category) {
+        return ART_NAMES[category];
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.android.sunshine.shared;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * The day labels of the list, the widgets and the detail view, against the SimpleDateFormat
+ * calls made for every label before.
+ */
+public class DayLabelFormatterTest {
+
+    private static final int LABELS = 1000000;
+    private static final int DAYS = 14;
+
+    private static final String TODAY = "Today";
+    private static final String TOMORROW = "Tomorrow";
+    private static final String FULL_FRIENDLY_DATE_FORMAT = "%1$s, %2$s";
+
+    // Far ahead of and behind UTC, and one with daylight saving time
+    private static final String[] TIME_ZONES = {"America/Los_Angeles", "Pacific/Kiritimati",
+            "Pacific/Pago_Pago", "Asia/Kolkata"};
+
+    private TimeZone mDefaultTimeZone;
+
+    @Before
+    public void setUp() {
+        mDefaultTimeZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    @Test
+    public void labels_matchFormattingEveryTime() {
+        for (String timeZone : TIME_ZONES) {
+            TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+            for (Locale locale : new Locale[] {Locale.US, Locale.FRANCE, new Locale("ar")}) {
+                DayLabelFormatter formatter = createFormatter(locale);
+                // Past days of an out of date forecast, and days past the cached ones
+                for (int day = -3; day < ForecastPayload.MAX_DAYS + 5; day++) {
+                    for (int hour : new int[] {0, 12, 23}) {
+                        long date = dayFromToday(day, hour);
+                        String message = timeZone + " " + locale + " day " + day + " " + hour
+                                + "h";
+                        assertEquals(message, label(locale, day, date, false),
+                                formatter.getDayLabel(date, false));
+                        assertEquals(message, label(locale, day, date, true),
+                                formatter.getDayLabel(date, true));
+                        assertEquals(message, dayName(locale, day, date),
+                                formatter.getDayName(date));
+                        assertEquals(message, format(locale, "MMMM dd", date),
+                                formatter.getMonthDay(date));
+                        assertEquals(message, String.format(FULL_FRIENDLY_DATE_FORMAT,
+                                dayName(locale, day, date), format(locale, "MMMM dd", date)),
+                                formatter.getFullFriendlyDayString(date));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cachedLabels_areTheSameString() {
+        DayLabelFormatter formatter = createFormatter(Locale.US);
+        for (int day = 0; day < DAYS; day++) {
+            long date = dayFromToday(day, 0);
+            assertSame(formatter.getDayLabel(date, false), formatter.getDayLabel(date, false));
+            assertSame(formatter.getDayLabel(date, true), formatter.getDayLabel(date, true));
+            assertSame(formatter.getDayName(date), formatter.getDayName(date));
+            assertSame(formatter.getMonthDay(date), formatter.getMonthDay(date));
+            assertSame(formatter.getFullFriendlyDayString(date),
+                    formatter.getFullFriendlyDayString(date + 60 * 60 * 1000));
+        }
+    }
+
+    @Test
+    public void appendsAfterWhatIsThere() {
+        DayLabelFormatter formatter = createFormatter(Locale.US);
+        StringBuilder out = new StringBuilder("Forecast for ");
+        assertSame(out, formatter.appendDayLabel(out, dayFromToday(1, 8), false));
+        assertEquals("Forecast for Tomorrow", out.toString());
+    }
+
+    /**
+     * A million labels of a two week forecast, logged rather than asserted on for time, but once
+     * every day has been labelled neither getDayLabel nor appending into a StringBuilder that
+     * has room may allocate.
+     */
+    @Test
+    public void label_benchmark() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long threadId = Thread.currentThread().getId();
+
+        DayLabelFormatter formatter = createFormatter(Locale.US);
+        long[] dates = new long[DAYS];
+        for (int day = 0; day < DAYS; day++) {
+            dates[day] = dayFromToday(day, 0);
+        }
+        StringBuilder out = new StringBuilder(64);
+        int checksum = 0;
+        // Warm up all three, so none is measured while being compiled
+        for (int i = 0; i < LABELS; i++) {
+            out.setLength(0);
+            int day = i % DAYS;
+            checksum += formatter.getDayLabel(dates[day], day == 0).length()
+                    + formatter.appendDayLabel(out, dates[day], day == 0).length()
+                    + (i % 10 == 0 ? label(Locale.US, day, dates[day], day == 0).length() : 0);
+        }
+
+        long allocated = allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < LABELS; i++) {
+            int day = i % DAYS;
+            checksum += formatter.getDayLabel(dates[day], day == 0).length();
+        }
+        long getNanos = System.nanoTime() - start;
+        long getBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        allocated = allocations.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < LABELS; i++) {
+            out.setLength(0);
+            int day = i % DAYS;
+            checksum += formatter.appendDayLabel(out, dates[day], day == 0).length();
+        }
+        long appendNanos = System.nanoTime() - start;
+        long appendBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        allocated = allocations.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < LABELS; i++) {
+            int day = i % DAYS;
+            checksum += label(Locale.US, day, dates[day], day == 0).length();
+        }
+        long formatNanos = System.nanoTime() - start;
+        long formatBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        System.out.println(LABELS + " day labels: getDayLabel " + perSecond(getNanos)
+                + "/s and " + getBytes + " bytes, appendDayLabel " + perSecond(appendNanos)
+                + "/s and " + appendBytes + " bytes, SimpleDateFormat every time "
+                + perSecond(formatNanos) + "/s and " + formatBytes / LABELS + " bytes each ("
+                + checksum + ")");
+        // getThreadAllocatedBytes itself may allocate a little, but nothing per label
+        assertTrue(getBytes + " bytes allocated", getBytes < 1024);
+        assertTrue(appendBytes + " bytes allocated", appendBytes < 1024);
+    }
+
+    private static DayLabelFormatter createFormatter(Locale locale) {
+        return new DayLabelFormatter(locale, TODAY, TOMORROW, FULL_FRIENDLY_DATE_FORMAT);
+    }
+
+    /**
+     * @return the given hour of the day that is the given number of days from today
+     */
+    private static long dayFromToday(int day, int hour) {
+        Calendar calendar = new GregorianCalendar();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, day);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * The label as it was formatted for every call.
+     */
+    private static String label(Locale locale, int day, long date, boolean displayLongToday) {
+        if (day == 0 && displayLongToday) {
+            return String.format(FULL_FRIENDLY_DATE_FORMAT, TODAY,
+                    format(locale, "MMMM dd", date));
+        } else if (day == 0 || day == 1) {
+            return dayName(locale, day, date);
+        } else if (day < 7) {
+            return format(locale, "EEEE", date);
+        }
+        return format(locale, "EEE MMM dd", date);
+    }
+
+    private static String dayName(Locale locale, int day, long date) {
+        if (day == 0) {
+            return TODAY;
+        } else if (day == 1) {
+            return TOMORROW;
+        }
+        return format(locale, "EEEE", date);
+    }
+
+    private static String format(Locale locale, String pattern, long date) {
+        return new SimpleDateFormat(pattern, locale).format(date);
+    }
+
+    private static long perSecond(long nanos) {
+        return LABELS * 1000000000L / Math.max(1, nanos);
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.android.sunshine.shared;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class ForecastPayloadTest {
+
+    private static final int DECODES = 200000;
+
+    private TimeZone mDefaultTimeZone;
+
+    @Before
+    public void setUp() {
+        mDefaultTimeZone = TimeZone.getDefault();
+        // Daylight saving time starts on 2016-03-13 here, in the middle of the forecast below
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    @Test
+    public void roundTrip() {
+        Forecast forecast = new Forecast(2016, Calendar.MARCH, 6, 14);
+        for (int flags : new int[] {0, ForecastPayload.FLAG_IMPERIAL}) {
+            byte[] data = forecast.encode(flags);
+            assertEquals(105, data.length);
+
+            ForecastPayload payload = new ForecastPayload();
+            assertTrue(payload.decode(data));
+            assertEquals(flags != 0, payload.isImperial());
+            assertEquals(14, payload.size());
+            for (int i = 0; i < 14; i++) {
+                assertEquals("day " + i, forecast.dates[i], payload.getDate(i));
+                assertEquals(forecast.weatherIds[i], payload.getWeatherId(i));
+                assertEquals(forecast.highs[i], payload.getHigh(i), 1e-9);
+                assertEquals(forecast.lows[i], payload.getLow(i), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void roundsToTenths() {
+        Forecast forecast = new Forecast(2016, Calendar.JUNE, 1, 1);
+        forecast.highs[0] = 21.26;
+        forecast.lows[0] = -3.04;
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(forecast.encode(0)));
+        assertEquals(21.3, payload.getHigh(0), 1e-9);
+        assertEquals(-3.0, payload.getLow(0), 1e-9);
+    }
+
+    @Test
+    public void skippedDays() {
+        Forecast forecast = new Forecast(2016, Calendar.JUNE, 1, 3);
+        forecast.dates[1] = midnight(2016, Calendar.JUNE, 4);
+        forecast.dates[2] = midnight(2016, Calendar.JUNE, 10);
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(forecast.encode(0)));
+        assertEquals(forecast.dates[1], payload.getDate(1));
+        assertEquals(forecast.dates[2], payload.getDate(2));
+    }
+
+    @Test
+    public void daylightSavingSkipsMidnight() {
+        // Clocks went from 00:00 to 01:00 on 2016-10-16 here
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"));
+        Forecast forecast = new Forecast(2016, Calendar.OCTOBER, 14, 4);
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(forecast.encode(0)));
+        assertEquals(new GregorianCalendar(2016, Calendar.OCTOBER, 16, 1, 0).getTimeInMillis(),
+                payload.getDate(2));
+        assertEquals(2, payload.indexOfDay(payload.getDate(2)));
+        assertEquals(forecast.dates[3], payload.getDate(3));
+    }
+
+    @Test
+    public void emptyForecast() {
+        byte[] data = ForecastPayload.encode(ForecastPayload.FLAG_IMPERIAL, new long[0], new int[0],
+                new double[0], new double[0], 0);
+        assertEquals(7, data.length);
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(new Forecast(2016, Calendar.JUNE, 1, 14).encode(0)));
+        assertTrue(payload.decode(data));
+        assertEquals(0, payload.size());
+        assertTrue(payload.isImperial());
+        assertEquals(-1, payload.indexOfDay(midnight(2016, Calendar.JUNE, 1)));
+    }
+
+    @Test
+    public void encodesAtMostMaxDays() {
+        Forecast forecast = new Forecast(2016, Calendar.JUNE, 1, 20);
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(forecast.encode(0)));
+        assertEquals(ForecastPayload.MAX_DAYS, payload.size());
+    }
+
+    @Test
+    public void indexOfDay() {
+        Forecast forecast = new Forecast(2016, Calendar.MARCH, 6, 14);
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(forecast.encode(0)));
+        Calendar calendar = new GregorianCalendar(2016, Calendar.MARCH, 13, 23, 59);
+        assertEquals(7, payload.indexOfDay(calendar.getTimeInMillis()));
+        calendar.add(Calendar.MINUTE, 1);
+        assertEquals(8, payload.indexOfDay(calendar.getTimeInMillis()));
+        assertEquals(0, payload.indexOfDay(forecast.dates[0]));
+        assertEquals(-1, payload.indexOfDay(forecast.dates[0] - 1));
+        assertEquals(-1, payload.indexOfDay(midnight(2016, Calendar.MARCH, 20)));
+    }
+
+    @Test
+    public void timeZoneChange() {
+        Forecast forecast = new Forecast(2016, Calendar.JUNE, 1, 14);
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(forecast.encode(0)));
+
+        // The watch is taken from California to Berlin
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        TimeZone.setDefault(berlin);
+        payload.setTimeZone(berlin);
+        Forecast local = new Forecast(2016, Calendar.JUNE, 1, 14);
+        for (int i = 0; i < 14; i++) {
+            assertEquals("day " + i, local.dates[i], payload.getDate(i));
+            assertEquals(i, payload.indexOfDay(local.dates[i]));
+        }
+        // 23:30 on the last day in California is already the day after in Berlin
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("America/Los_Angeles"));
+        calendar.clear();
+        calendar.set(2016, Calendar.JUNE, 14, 23, 30);
+        assertEquals(-1, payload.indexOfDay(calendar.getTimeInMillis()));
+
+        // What is decoded next is local to the new zone too
+        assertTrue(payload.decode(local.encode(0)));
+        assertEquals(local.dates[13], payload.getDate(13));
+    }
+
+    @Test
+    public void rejectsBadPayloads() {
+        byte[] data = new Forecast(2016, Calendar.MARCH, 6, 14).encode(0);
+        ForecastPayload payload = new ForecastPayload();
+        assertTrue(payload.decode(data));
+
+        assertFalse(payload.decode(null));
+        assertFalse(payload.decode(new byte[0]));
+        assertFalse(payload.decode(Arrays.copyOf(data, 6)));
+        // a day short
+        assertFalse(payload.decode(Arrays.copyOf(data, data.length - 7)));
+        assertFalse(payload.decode(Arrays.copyOf(data, data.length - 1)));
+
+        byte[] corrupt = data.clone();
+        corrupt[0] = 2;
+        assertFalse("unknown version", payload.decode(corrupt));
+        corrupt = Arrays.copyOf(data, 7 + 17 * 7);
+        corrupt[6] = 17;
+        assertFalse("more than MAX_DAYS", payload.decode(corrupt));
+        corrupt[6] = (byte) 0xff;
+        assertFalse("more than MAX_DAYS", payload.decode(corrupt));
+
+        // None of these may have touched what was decoded before
+        assertEquals(14, payload.size());
+        assertEquals(new Forecast(2016, Calendar.MARCH, 6, 14).dates[13], payload.getDate(13));
+    }
+
+    /**
+     * Logs the size of 14 days and how long decoding them takes, for the payload and for the same
+     * forecast as keyed values, one map per day, the way a DataMap carries it.
+     */
+    @Test
+    public void decode_benchmark() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long threadId = Thread.currentThread().getId();
+
+        Forecast forecast = new Forecast(2016, Calendar.MARCH, 6, 14);
+        byte[] payloadData = forecast.encode(ForecastPayload.FLAG_IMPERIAL);
+        byte[] keyedData = KeyedForecast.encode(forecast, true);
+        ForecastPayload payload = new ForecastPayload();
+        KeyedForecast keyed = new KeyedForecast(14);
+        assertTrue(payload.decode(payloadData));
+        keyed.decode(keyedData);
+        assertArrayEquals(forecast.dates, keyed.dates);
+        assertArrayEquals(forecast.weatherIds, keyed.weatherIds);
+
+        long checksum = 0;
+        // Warm up both, so neither is measured while being compiled
+        for (int i = 0; i < DECODES; i++) {
+            payload.decode(payloadData);
+            keyed.decode(keyedData);
+            checksum += payload.getDate(13) + keyed.dates[13];
+        }
+
+        long allocated = allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < DECODES; i++) {
+            payload.decode(payloadData);
+            checksum += payload.getWeatherId(i % 14);
+        }
+        long payloadNanos = System.nanoTime() - start;
+        long payloadBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        allocated = allocations.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < DECODES; i++) {
+            keyed.decode(keyedData);
+            checksum += keyed.weatherIds[i % 14];
+        }
+        long keyedNanos = System.nanoTime() - start;
+        long keyedBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        System.out.println("14 days: payload " + payloadData.length + " bytes, "
+                + payloadNanos / DECODES + "ns and " + payloadBytes / DECODES
+                + " bytes allocated per decode; keyed values " + keyedData.length + " bytes, "
+                + keyedNanos / DECODES + "ns and " + keyedBytes / DECODES
+                + " bytes allocated per decode (" + checksum + ")");
+        assertTrue(payloadData.length * 4 < keyedData.length);
+        // getThreadAllocatedBytes itself may allocate a little, but nothing per decode
+        assertTrue(payloadBytes + " bytes allocated", payloadBytes < 1024);
+    }
+
+    private static long midnight(int year, int month, int day) {
+        return new GregorianCalendar(year, month, day).getTimeInMillis();
+    }
+
+    /**
+     * A forecast of consecutive days, as the phone has it in its database.
+     */
+    private static class Forecast {
+        final long[] dates;
+        final int[] weatherIds;
+        final double[] highs;
+        final double[] lows;
+
+        Forecast(int year, int month, int day, int days) {
+            dates = new long[days];
+            weatherIds = new int[days];
+            highs = new double[days];
+            lows = new double[days];
+            for (int i = 0; i < days; i++) {
+                dates[i] = midnight(year, month, day + i);
+                weatherIds[i] = 200 + 50 * i;
+                highs[i] = 15.5 + i;
+                lows[i] = -10.3 + i * 0.7;
+            }
+        }
+
+        byte[] encode(int flags) {
+            return ForecastPayload.encode(flags, dates, weatherIds, highs, lows, dates.length);
+        }
+    }
+
+    /**
+     * The forecast as a DataMap would carry it: a flag, and a list of maps with a date, weather
+     * id, high and low each, written as typed values under their keys.  DataMap itself needs Play
+     * services; like it, this decodes into maps of boxed values before they can be read.
+     */
+    private static class KeyedForecast {
+        private static final byte TYPE_BOOLEAN = 1;
+        private static final byte TYPE_INT = 2;
+        private static final byte TYPE_LONG = 3;
+        private static final byte TYPE_DOUBLE = 4;
+        private static final byte TYPE_MAP_LIST = 5;
+
+        final long[] dates;
+        final int[] weatherIds;
+        final double[] highs;
+        final double[] lows;
+        boolean imperial;
+
+        KeyedForecast(int days) {
+            dates = new long[days];
+            weatherIds = new int[days];
+            highs = new double[days];
+            lows = new double[days];
+        }
+
+        static byte[] encode(Forecast forecast, boolean imperial) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(2);
+            out.writeUTF("imperial");
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean(imperial);
+            out.writeUTF("forecast");
+            out.writeByte(TYPE_MAP_LIST);
+            out.writeInt(forecast.dates.length);
+            for (int i = 0; i < forecast.dates.length; i++) {
+                out.writeInt(4);
+                out.writeUTF("date");
+                out.writeByte(TYPE_LONG);
+                out.writeLong(forecast.dates[i]);
+                out.writeUTF("weatherId");
+                out.writeByte(TYPE_INT);
+                out.writeInt(forecast.weatherIds[i]);
+                out.writeUTF("high");
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble(forecast.highs[i]);
+                out.writeUTF("low");
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble(forecast.lows[i]);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        void decode(byte[] data) throws IOException {
+            Map<String, Object> map =
+                    readMap(new DataInputStream(new ByteArrayInputStream(data)));
+            imperial = (Boolean) map.get("imperial");
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> days = (List<Map<String, Object>>) map.get("forecast");
+            for (int i = 0; i < days.size(); i++) {
+                Map<String, Object> day = days.get(i);
+                dates[i] = (Long) day.get("date");
+                weatherIds[i] = (Integer) day.get("weatherId");
+                highs[i] = (Double) day.get("high");
+                lows[i] = (Double) day.get("low");
+            }
+        }
+
+        private static Map<String, Object> readMap(DataInputStream in) throws IOException {
+            int entries = in.readInt();
+            Map<String, Object> map = new HashMap<String, Object>();
+            for (int i = 0; i < entries; i++) {
+                String key = in.readUTF();
+                byte type = in.readByte();
+                switch (type) {
+                    case TYPE_BOOLEAN:
+                        map.put(key, in.readBoolean());
+                        break;
+                    case TYPE_INT:
+                        map.put(key, in.readInt());
+                        break;
+                    case TYPE_LONG:
+                        map.put(key, in.readLong());
+                        break;
+                    case TYPE_DOUBLE:
+                        map.put(key, in.readDouble());
+                        break;
+                    case TYPE_MAP_LIST:
+                        int size = in.readInt();
+                        List<Map<String, Object>> list = new ArrayList<Map<String, Object>>(size);
+                        for (int j = 0; j < size; j++) {
+                            list.add(readMap(in));
+                        }
+                        map.put(key, list);
+                        break;
+                    default:
+                        throw new IOException("Unknown type " + type);
+                }
+            }
+            return map;
+        }
+    }
+}
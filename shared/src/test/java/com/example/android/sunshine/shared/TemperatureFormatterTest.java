@@ -0,0 +1,187 @@
+package com.example.android.sunshine.shared;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * The temperatures the phone and the watch show, against the String.format calls they replaced.
+ */
+public class TemperatureFormatterTest {
+
+    private static final int FORMATS = 1000000;
+
+    // Latin digits, and locales that write the number with digits of their own
+    private static final Locale[] LOCALES = {
+            Locale.US,
+            Locale.GERMANY,
+            new Locale("ar"),
+            Locale.forLanguageTag("ar-EG"),
+            new Locale("fa"),
+            Locale.forLanguageTag("hi-IN-u-nu-deva"),
+            Locale.forLanguageTag("th-TH-u-nu-thai"),
+            Locale.forLanguageTag("bn-BD")
+    };
+
+    @Test
+    public void localesUnderTestHaveTheirOwnDigits() {
+        // Otherwise the tests below wouldn't check the digits at all
+        int nonAscii = 0;
+        for (Locale locale : LOCALES) {
+            if (String.format(locale, "%1.0f", 7.0).charAt(0) != '7') {
+                nonAscii++;
+            }
+        }
+        assertTrue(nonAscii + " locales with their own digits", nonAscii >= 3);
+    }
+
+    @Test
+    public void denseRange_matchesStringFormat() {
+        for (Locale locale : LOCALES) {
+            for (boolean imperial : new boolean[] {false, true}) {
+                TemperatureFormatter formatter =
+                        new TemperatureFormatter(locale, imperial, TemperatureFormatter.DEGREE);
+                for (int i = -100000; i <= 100000; i++) {
+                    assertFormats(formatter, i / 1000.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void halfDegrees_matchStringFormat() {
+        for (Locale locale : LOCALES) {
+            for (boolean imperial : new boolean[] {false, true}) {
+                TemperatureFormatter formatter =
+                        new TemperatureFormatter(locale, imperial, TemperatureFormatter.DEGREE);
+                for (int whole = -200; whole <= 200; whole++) {
+                    double half = whole + 0.5;
+                    assertFormats(formatter, half);
+                    assertFormats(formatter, Math.nextUp(half));
+                    assertFormats(formatter, Math.nextAfter(half, Double.NEGATIVE_INFINITY));
+                    // The Celsius that lands on a half degree Fahrenheit
+                    assertFormats(formatter, (half - 32) / 1.8);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void zeroAndItsNeighbours_matchStringFormat() {
+        double[] temperatures = {0.0, -0.0, 0.4, -0.4, 0.5, -0.5, 0.49999999999999994,
+                -0.49999999999999994, Double.MIN_VALUE, -Double.MIN_VALUE,
+                // -17.77... Celsius is 0 Fahrenheit
+                -160 / 9.0, Math.nextUp(-160 / 9.0), Math.nextAfter(-160 / 9.0, -18)};
+        for (Locale locale : LOCALES) {
+            for (boolean imperial : new boolean[] {false, true}) {
+                TemperatureFormatter formatter =
+                        new TemperatureFormatter(locale, imperial, TemperatureFormatter.DEGREE);
+                for (double temperature : temperatures) {
+                    assertFormats(formatter, temperature);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void extremes_matchStringFormat() {
+        double[] temperatures = {1e6, -1e6, 123456789.5, 1e15 - 1, -(1e15 - 1), 1e15, 1e300,
+                Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN};
+        for (Locale locale : LOCALES) {
+            TemperatureFormatter formatter =
+                    new TemperatureFormatter(locale, false, TemperatureFormatter.DEGREE);
+            for (double temperature : temperatures) {
+                assertFormats(formatter, temperature);
+            }
+        }
+    }
+
+    @Test
+    public void appendsAfterWhatIsThere() {
+        TemperatureFormatter formatter = new TemperatureFormatter(Locale.US, true, " F");
+        StringBuilder out = new StringBuilder("High ");
+        assertSame(out, formatter.append(out, 100));
+        assertEquals("High 212 F", out.toString());
+    }
+
+    /**
+     * A million temperatures, logged rather than asserted on for time, but appending into a
+     * StringBuilder that has room must not allocate.
+     */
+    @Test
+    public void format_benchmark() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long threadId = Thread.currentThread().getId();
+
+        TemperatureFormatter formatter =
+                new TemperatureFormatter(Locale.US, false, TemperatureFormatter.DEGREE);
+        StringBuilder out = new StringBuilder(16);
+        int checksum = 0;
+        // Warm up all three, so none is measured while being compiled
+        for (int i = 0; i < FORMATS; i++) {
+            out.setLength(0);
+            checksum += formatter.append(out, temperature(i)).length()
+                    + formatter.format(temperature(i)).length()
+                    + formatWithString(temperature(i)).length();
+        }
+
+        long allocated = allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < FORMATS; i++) {
+            out.setLength(0);
+            checksum += formatter.append(out, temperature(i)).length();
+        }
+        long appendNanos = System.nanoTime() - start;
+        long appendBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        allocated = allocations.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < FORMATS; i++) {
+            checksum += formatter.format(temperature(i)).length();
+        }
+        long formatNanos = System.nanoTime() - start;
+        long formatBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        allocated = allocations.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < FORMATS; i++) {
+            checksum += formatWithString(temperature(i)).length();
+        }
+        long stringNanos = System.nanoTime() - start;
+        long stringBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        System.out.println(FORMATS + " temperatures: append " + perSecond(appendNanos) + "/s and "
+                + appendBytes + " bytes, format " + perSecond(formatNanos) + "/s and "
+                + formatBytes / FORMATS + " bytes each, String.format " + perSecond(stringNanos)
+                + "/s and " + stringBytes / FORMATS + " bytes each (" + checksum + ")");
+        // getThreadAllocatedBytes itself may allocate a little, but nothing per temperature
+        assertTrue(appendBytes + " bytes allocated", appendBytes < 1024);
+    }
+
+    private static void assertFormats(TemperatureFormatter formatter, double celsius) {
+        double temperature = formatter.isImperial() ? (celsius * 1.8) + 32 : celsius;
+        String expected = String.format(formatter.getLocale(), "%1.0f", temperature)
+                + TemperatureFormatter.DEGREE;
+        assertEquals(formatter.getLocale() + (formatter.isImperial() ? " imperial " : " ")
+                + celsius, expected, formatter.format(celsius));
+    }
+
+    private static double temperature(int i) {
+        return -40 + (i % 1000) * 0.1;
+    }
+
+    private static String formatWithString(double temperature) {
+        return String.format(Locale.US, "%1.0f", temperature) + TemperatureFormatter.DEGREE;
+    }
+
+    private static long perSecond(long nanos) {
+        return FORMATS * 1000000000L / Math.max(1, nanos);
+    }
+}
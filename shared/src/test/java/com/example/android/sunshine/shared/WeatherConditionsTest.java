@@ -0,0 +1,76 @@
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the condition table against the chain of ranges the phone and the watch used to walk
+ * for every id.
+ */
+public class WeatherConditionsTest {
+
+    @Test
+    public void everyIdMatchesTheRanges() {
+        for (int id = WeatherConditions.MIN_ID; id <= WeatherConditions.MAX_ID; id++) {
+            assertEquals("art of " + id, artNameFromRanges(id),
+                    WeatherConditions.getArtName(WeatherConditions.getCategory(id)));
+        }
+    }
+
+    @Test
+    public void idsOutsideTheTable() {
+        for (int id : new int[] {Integer.MIN_VALUE, -1, 0, 199, 963, 1000, Integer.MAX_VALUE}) {
+            assertEquals(WeatherConditions.CATEGORY_NONE, WeatherConditions.getCategory(id));
+        }
+        assertNull(WeatherConditions.getArtName(WeatherConditions.CATEGORY_NONE));
+    }
+
+    @Test
+    public void categoriesAreShownLikeBefore() {
+        for (int id = WeatherConditions.MIN_ID; id <= WeatherConditions.MAX_ID; id++) {
+            int category = WeatherConditions.getCategory(id);
+            assertTrue(category >= 0 && category < WeatherConditions.CATEGORY_COUNT);
+            // 781 is the only id with a category of its own, the art is the storm's
+            if (id == 781) {
+                assertEquals(WeatherConditions.CATEGORY_TORNADO, category);
+            } else if (artNameFromRanges(id) == null) {
+                assertEquals("category of " + id, WeatherConditions.CATEGORY_NONE, category);
+            } else {
+                assertNotEquals("category of " + id, WeatherConditions.CATEGORY_NONE, category);
+                assertNotEquals("category of " + id, WeatherConditions.CATEGORY_TORNADO,
+                        category);
+            }
+        }
+    }
+
+    /**
+     * Utility.getArtUrlForWeatherCondition's chain, as it was before the table.
+     */
+    private static String artNameFromRanges(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+}
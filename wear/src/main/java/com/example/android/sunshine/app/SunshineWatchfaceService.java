@@ -20,7 +20,9 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -30,28 +32,40 @@ import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.content.res.ResourcesCompat;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.text.format.Time;
+import android.util.Base64;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.shared.ForecastPayload;
+import com.example.android.sunshine.shared.TemperatureFormatter;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -79,17 +93,35 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * The watch face asks the phone for the forecast at most this often, when it wakes up.
+     */
+    private static final long FORECAST_REQUEST_INTERVAL_MS = TimeUnit.MINUTES.toMillis(15);
+
     // to store values received from the phone
     private String mMinTemp = "--" ;
     private String mMaxTemp= "--";
     private int mWeatherId = 800;
     private boolean mIsround = false;
+    // The whole forecast, decoded in place every time the phone sends a new one
+    private final ForecastPayload mForecast = new ForecastPayload();
+    // The last payload received, as saved in the preferences
+    private byte[] mSavedForecast;
+    // Whether the weather above was loaded from the preferences
+    private boolean mWeatherRestored;
 
     private GoogleApiClient mGoogleApiClient;
 
+    // To log how long the face showed placeholders after it was created
+    private long mEngineCreatedNanos;
+
     @Override
     public Engine onCreateEngine() {
 
+        mEngineCreatedNanos = System.nanoTime();
+        // Show the last weather received right away, the phone may take a while to send more
+        mWeatherRestored = restoreWeather();
+
         mGoogleApiClient = new GoogleApiClient.Builder(this)
                 .addApi(Wearable.API)
                 .addConnectionCallbacks(this)
@@ -120,6 +152,50 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
 
 
 
+    /**
+     * Loads the weather saved by {@link #saveForecast} or {@link #saveTodayWeather}.
+     *
+     * @return true if there was any
+     */
+    private boolean restoreWeather() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String forecast = prefs.getString(getString(R.string.pref_forecast_payload_key), null);
+        if (forecast != null) {
+            byte[] payload = Base64.decode(forecast, Base64.NO_WRAP);
+            if (mForecast.decode(payload)) {
+                mSavedForecast = payload;
+                return true;
+            }
+        }
+        String weatherIdKey = getString(R.string.pref_today_weather_id_key);
+        if (prefs.contains(weatherIdKey)) {
+            mWeatherId = prefs.getInt(weatherIdKey, mWeatherId);
+            mMaxTemp = prefs.getString(getString(R.string.pref_today_high_key), mMaxTemp);
+            mMinTemp = prefs.getString(getString(R.string.pref_today_low_key), mMinTemp);
+            return true;
+        }
+        return false;
+    }
+
+    private void saveForecast(byte[] payload) {
+        if (Arrays.equals(payload, mSavedForecast)) {
+            return;
+        }
+        mSavedForecast = payload;
+        PreferenceManager.getDefaultSharedPreferences(this).edit()
+                .putString(getString(R.string.pref_forecast_payload_key),
+                        Base64.encodeToString(payload, Base64.NO_WRAP))
+                .apply();
+    }
+
+    private void saveTodayWeather() {
+        PreferenceManager.getDefaultSharedPreferences(this).edit()
+                .putInt(getString(R.string.pref_today_weather_id_key), mWeatherId)
+                .putString(getString(R.string.pref_today_high_key), mMaxTemp)
+                .putString(getString(R.string.pref_today_low_key), mMinTemp)
+                .apply();
+    }
+
     private static class EngineHandler extends Handler {
         private final WeakReference<SunshineWatchfaceService.Engine> mWeakReference;
 
@@ -141,13 +217,12 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
     }
 
     private class Engine extends CanvasWatchFaceService.Engine
-            implements DataApi.DataListener{
+            implements DataApi.DataListener, GoogleApiClient.ConnectionCallbacks{
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
         Paint mBackgroundPaint;
-        Paint mTimePaint;
-        Paint mDatePaint;
-        Paint mTemperaturePaint;
+        FaceRenderer mInteractiveRenderer;
+        FaceRenderer mAmbientRenderer;
 
         boolean mAmbient;
         Time mTime;
@@ -156,6 +231,11 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
             public void onReceive(Context context, Intent intent) {
                 mTime.clear(intent.getStringExtra("time-zone"));
                 mTime.setToNow();
+                TimeZone timeZone = TimeZone.getDefault();
+                mInteractiveRenderer.setTimeZone(timeZone);
+                mAmbientRenderer.setTimeZone(timeZone);
+                mForecast.setTimeZone(timeZone);
+                invalidate();
             }
         };
         int mTapCount;
@@ -171,8 +251,22 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
         float mWeatherIconYOffset;
 
 
-        SimpleDateFormat mFormatedDateNormal = new SimpleDateFormat("EEE, MMM/dd/y");
-        SimpleDateFormat mFormatedDateAmbient = new SimpleDateFormat("MM/dd/y");
+        // Everything below is prepared ahead, so that drawing a frame allocates nothing
+
+        int mRoundIconXIncrement;
+
+        // "H:MM:SS", rewritten in place every frame
+        final char[] mTimeChars = new char[8];
+
+        // The day today's weather was last picked for
+        int mLastYearDay = -1;
+
+        // Only built again when the weather changes
+        String mTemperatureText;
+        // Kept while the units and the language stay the same
+        TemperatureFormatter mTemperatureFormatter;
+        Bitmap mWeatherIcon;
+        int mWeatherIconResourceId;
 
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
@@ -180,11 +274,27 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
          */
         boolean mLowBitAmbient;
 
+        /**
+         * Whether the display needs burn-in protection. When true, the time is only outlined in
+         * ambient mode.
+         */
+        boolean mBurnInProtection;
+
+        // Whether real weather is shown rather than the placeholders, and where it came from
+        boolean mHasWeather;
+        String mWeatherSource;
+        boolean mFirstWeatherFrameLogged;
+
+        // When the phone was last asked for the forecast, in elapsed realtime
+        long mLastForecastRequest;
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
 
             Wearable.DataApi.addListener(mGoogleApiClient, this);
+            // Called right away if the client is connected already
+            mGoogleApiClient.registerConnectionCallbacks(this);
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(SunshineWatchfaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
@@ -205,24 +315,90 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(resources.getColor(R.color.background));
 
-            mTimePaint = new Paint();
-            mTimePaint = createTextPaint(resources.getColor(R.color.digital_text));
+            int textColor = resources.getColor(R.color.digital_text);
+            mInteractiveRenderer = new FaceRenderer(false, textColor,
+                    resources.getColor(R.color.digital_temp), "EEE, MMM/dd/y");
+            mAmbientRenderer = new FaceRenderer(true, textColor, textColor, "MM/dd/y");
 
-            mDatePaint = new Paint();
-            mDatePaint = createTextPaint(resources.getColor(R.color.digital_text));
 
-            mTemperaturePaint = new Paint();
-            mTemperaturePaint = createTextPaint(resources.getColor(R.color.digital_temp));
+            mTime = new Time();
+            if (mWeatherRestored) {
+                updateTodayFromForecast();
+                onWeatherShown("saved weather");
+            }
+            onWeatherChanged();
+        }
 
+        /**
+         * Remembers where the first real weather shown came from, for the startup log.
+         */
+        private void onWeatherShown(String source) {
+            if (!mHasWeather) {
+                mHasWeather = true;
+                mWeatherSource = source;
+            }
+        }
 
-            mTime = new Time();
+        @Override
+        public void onConnected(@Nullable Bundle bundle) {
+            // Whatever the phone sent while the face wasn't running, it may be newer than what
+            // was saved
+            Wearable.DataApi.getDataItems(mGoogleApiClient)
+                    .setResultCallback(new ResultCallback<DataItemBuffer>() {
+                        @Override
+                        public void onResult(@NonNull DataItemBuffer dataItems) {
+                            boolean changed = false;
+                            if (dataItems.getStatus().isSuccess()) {
+                                for (DataItem dataItem : dataItems) {
+                                    changed |= applyDataItem(dataItem);
+                                }
+                            }
+                            dataItems.release();
+                            if (changed) {
+                                onWeatherShown("data items");
+                                onWeatherChanged();
+                                invalidate();
+                            }
+                        }
+                    });
+            requestForecast();
+        }
+
+        /**
+         * Asks the phone to send its forecast.  The phone answers from what it has stored, and
+         * only goes to the network if that is old.
+         */
+        private void requestForecast() {
+            long now = SystemClock.elapsedRealtime();
+            if (!mGoogleApiClient.isConnected() || (mLastForecastRequest != 0
+                    && now - mLastForecastRequest < FORECAST_REQUEST_INTERVAL_MS)) {
+                return;
+            }
+            mLastForecastRequest = now;
+            Wearable.NodeApi.getConnectedNodes(mGoogleApiClient)
+                    .setResultCallback(new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+                        @Override
+                        public void onResult(@NonNull NodeApi.GetConnectedNodesResult result) {
+                            for (Node node : result.getNodes()) {
+                                Wearable.MessageApi.sendMessage(mGoogleApiClient, node.getId(),
+                                        ForecastPayload.REQUEST_PATH, null);
+                            }
+                        }
+                    });
+        }
+
+        @Override
+        public void onConnectionSuspended(int i) {
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mGoogleApiClient.unregisterConnectionCallbacks(this);
             mGoogleApiClient.disconnect();
             Wearable.DataApi.removeListener(mGoogleApiClient, this);
+            mInteractiveRenderer.release();
+            mAmbientRenderer.release();
             super.onDestroy();
         }
 
@@ -244,6 +420,9 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
                 // Update time zone in case it changed while we weren't visible.
                 mTime.clear(TimeZone.getDefault().getID());
                 mTime.setToNow();
+                mForecast.setTimeZone(TimeZone.getDefault());
+
+                requestForecast();
             } else {
                 unregisterReceiver();
             }
@@ -287,15 +466,19 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
             float temperatureTextSize = resources.getDimension(isRound
                     ? R.dimen.digital_temperature_text_size_round : R.dimen.digital_temperature_text_size);
 
-            mTimePaint.setTextSize(timeTextSize);
-            mDatePaint.setTextSize(dateTextSize);
-            mTemperaturePaint.setTextSize(temperatureTextSize);
+            mRoundIconXIncrement = resources.getDimensionPixelOffset(
+                    R.dimen.digital_weather_icon_x_offset_Increment);
+            mInteractiveRenderer.setTextSizes(timeTextSize, dateTextSize, temperatureTextSize);
+            mAmbientRenderer.setTextSizes(timeTextSize, dateTextSize, temperatureTextSize);
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mAmbientRenderer.setAntiAlias(!mLowBitAmbient);
+            mAmbientRenderer.setTimeOutlined(mBurnInProtection);
         }
 
         @Override
@@ -308,10 +491,8 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
+                // Each mode has its own renderer, nothing has to be recoloured or redrawn here
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTimePaint.setAntiAlias(!inAmbientMode);
-                }
                 invalidate();
             }
 
@@ -339,6 +520,7 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
                     mTapCount++;
                     mBackgroundPaint.setColor(resources.getColor(mTapCount % 2 == 0 ?
                             R.color.background : R.color.background2));
+                    mInteractiveRenderer.invalidateLayer();
                     break;
             }
             invalidate();
@@ -347,64 +529,201 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
 
+            mTime.setToNow();
+            if (mTime.yearDay != mLastYearDay) {
+                // On a new day, today's weather is another entry of the forecast
+                if (mLastYearDay != -1 && mForecast.size() > 0) {
+                    updateTodayFromForecast();
+                    onWeatherChanged();
+                }
+                mLastYearDay = mTime.yearDay;
+            }
 
-            float watchWidth = bounds.width();
+            // The ambient renderer is only called once a minute, from onTimeTick
+            if (mAmbient) {
+                mAmbientRenderer.draw(canvas, bounds);
+            } else {
+                mInteractiveRenderer.draw(canvas, bounds);
+            }
 
+            if (mHasWeather && !mFirstWeatherFrameLogged) {
+                mFirstWeatherFrameLogged = true;
+                Log.d("SunshineWatchfaceSvc", "First frame with weather from " + mWeatherSource
+                        + " after " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mEngineCreatedNanos) + "ms");
+            }
+        }
 
-            Resources resources = SunshineWatchfaceService.this.getResources();
+        /**
+         * Writes the current time into {@link #mTimeChars}.
+         *
+         * @return the number of chars written
+         */
+        private int formatTime(boolean ambient) {
+            return Utility.formatTime(mTimeChars, mTime.hour, mTime.minute, mTime.second,
+                    !ambient);
+        }
 
-            // Draw the background and set offsets
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-                mTemperaturePaint.setColor(resources.getColor(R.color.digital_text));
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-                mTemperaturePaint.setColor(resources.getColor(R.color.digital_temp));
+        /**
+         * Rebuilds the temperature text and the weather icon after new weather came in.
+         */
+        private void onWeatherChanged() {
+            mTemperatureText = mMaxTemp + "  " + mMinTemp;
+            mInteractiveRenderer.invalidateLayer();
+            mAmbientRenderer.invalidateLayer();
+
+            int resourceId = getArtResourceForWeatherCondition(mWeatherId);
+            if (resourceId == mWeatherIconResourceId && mWeatherIcon != null) {
+                return;
+            }
+            mWeatherIconResourceId = resourceId;
+            mWeatherIcon = null;
+            if (resourceId == -1) {
+                return;
+            }
+            Drawable d = ResourcesCompat.getDrawable(getResources(), resourceId, null);
+            if (d == null) {
+                return;
             }
+            int width = (int) mWeatherIconWidth;
+            int height = (int) mWeatherIconHeight;
+            Bitmap icon = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            d.setBounds(0, 0, width, height);
+            d.draw(new Canvas(icon));
+            mWeatherIcon = icon;
+        }
 
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
-            mTime.setToNow();
+        /**
+         * Draws the face in one mode.  Interactive and ambient mode each have their own renderer,
+         * with their own paints, date format and static layer, so a mode switch neither
+         * recolours a paint nor redraws a layer.  The ambient renderer draws white text on black
+         * only, without the background colour or the weather icon.
+         */
+        private class FaceRenderer {
+            final boolean mAmbientMode;
+            final Paint mTimePaint;
+            final Paint mDatePaint;
+            final Paint mTemperaturePaint;
+            final SimpleDateFormat mDateFormat;
+
+            // Only formatted again when the day changes
+            String mDateText;
+            int mDateYear = -1;
+            int mDateYearDay = -1;
+
+            // Background, date, icon and temperature, drawn once and copied onto every frame.
+            // Only the time is drawn over it per frame.
+            Bitmap mLayer;
+            Canvas mLayerCanvas;
+            boolean mLayerDirty = true;
+
+            FaceRenderer(boolean ambientMode, int textColor, int temperatureColor,
+                         String datePattern) {
+                mAmbientMode = ambientMode;
+                mTimePaint = createTextPaint(textColor);
+                mDatePaint = createTextPaint(textColor);
+                mTemperaturePaint = createTextPaint(temperatureColor);
+                mDateFormat = new SimpleDateFormat(datePattern);
+            }
+
+            void setTextSizes(float timeTextSize, float dateTextSize, float temperatureTextSize) {
+                mTimePaint.setTextSize(timeTextSize);
+                mDatePaint.setTextSize(dateTextSize);
+                mTemperaturePaint.setTextSize(temperatureTextSize);
+                mLayerDirty = true;
+            }
+
+            void setAntiAlias(boolean antiAlias) {
+                mTimePaint.setAntiAlias(antiAlias);
+                mDatePaint.setAntiAlias(antiAlias);
+                mTemperaturePaint.setAntiAlias(antiAlias);
+                mLayerDirty = true;
+            }
+
+            void setTimeOutlined(boolean outlined) {
+                mTimePaint.setStyle(outlined ? Paint.Style.STROKE : Paint.Style.FILL);
+            }
 
-            String time = mAmbient
-                    ? String.format("%d:%02d", mTime.hour, mTime.minute)
-                    : String.format("%d:%02d:%02d", mTime.hour, mTime.minute,mTime.second);
-            float timeTextwidth = mTimePaint.measureText(time);
-            canvas.drawText(time, (watchWidth-timeTextwidth)/2, mTimeYOffset, mTimePaint);
-
-            // Draw Date
-            String date = mAmbient
-                    ? mFormatedDateAmbient.format(mTime.toMillis(true))
-                    : mFormatedDateNormal.format(mTime.toMillis(true));
-            float dateTextWidth = mDatePaint.measureText(date);
-            canvas.drawText(date, (watchWidth-dateTextWidth)/2 , mDateYOffset, mDatePaint);
-
-            if (!isInAmbientMode()){
-                //Draw wheather Icon only if not in ambient mode
-                Drawable d = ResourcesCompat.getDrawable(getResources(),getArtResourceForWeatherCondition(mWeatherId),null);
-                int watchWidthInt = (int) watchWidth;
-                int l = (watchWidthInt / 4) - ((int)mWeatherIconWidth/2);
-                int t = (int)mWeatherIconYOffset;
-                int r = l + (int)mWeatherIconWidth;
-                int b = (int)mWeatherIconYOffset + (int)mWeatherIconHeight;
-                if (mIsround){
-                    int increment = resources.getDimensionPixelOffset(R.dimen.digital_weather_icon_x_offset_Increment);
-                    l = l + increment;
-                    r = r + increment;
+            void setTimeZone(TimeZone timeZone) {
+                mDateFormat.setTimeZone(timeZone);
+                mDateYear = -1;
+            }
+
+            void invalidateLayer() {
+                mLayerDirty = true;
+            }
+
+            void release() {
+                if (mLayer != null) {
+                    mLayer.recycle();
+                    mLayer = null;
                 }
-                d.setBounds(l,t,r,b);
-                d.draw(canvas);
             }
 
+            void draw(Canvas canvas, Rect bounds) {
+                if (mTime.year != mDateYear || mTime.yearDay != mDateYearDay) {
+                    mDateYear = mTime.year;
+                    mDateYearDay = mTime.yearDay;
+                    mDateText = mDateFormat.format(mTime.toMillis(true));
+                    mLayerDirty = true;
+                }
+
+                int width = bounds.width();
+                int height = bounds.height();
+                if (mLayer == null || mLayer.getWidth() != width || mLayer.getHeight() != height) {
+                    release();
+                    mLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                    mLayerCanvas = new Canvas(mLayer);
+                    mLayerDirty = true;
+                }
+                if (mLayerDirty) {
+                    drawLayer(mLayerCanvas, width, height);
+                    mLayerDirty = false;
+                }
+                canvas.drawBitmap(mLayer, 0, 0, null);
 
-            //Draw Temperature
-            String temperature = mMaxTemp + "  " + mMinTemp;
-            float temperatureTextWidth = mTemperaturePaint.measureText(temperature);
-            if (isInAmbientMode()){
-                canvas.drawText(temperature, (watchWidth - temperatureTextWidth )/2 , mTemperatureYOffset, mTemperaturePaint);
-            }else{
-                canvas.drawText(temperature, (watchWidth/2)+10 , mTemperatureYOffset, mTemperaturePaint);
+                // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
+                int timeLength = formatTime(mAmbientMode);
+                float timeTextwidth = mTimePaint.measureText(mTimeChars, 0, timeLength);
+                canvas.drawText(mTimeChars, 0, timeLength, (width-timeTextwidth)/2, mTimeYOffset, mTimePaint);
             }
 
+            /**
+             * Draws everything but the time: the background, the date, the weather icon and the
+             * temperature.
+             */
+            private void drawLayer(Canvas canvas, int width, int height) {
+
+                float watchWidth = width;
+
+                // Draw the background
+                if (mAmbientMode) {
+                    canvas.drawColor(Color.BLACK);
+                } else {
+                    canvas.drawRect(0, 0, width, height, mBackgroundPaint);
+                }
+
+                // Draw Date
+                float dateTextWidth = mDatePaint.measureText(mDateText);
+                canvas.drawText(mDateText, (watchWidth-dateTextWidth)/2 , mDateYOffset, mDatePaint);
+
+                if (!mAmbientMode && mWeatherIcon != null){
+                    //Draw wheather Icon only if not in ambient mode
+                    int l = ((int) watchWidth / 4) - ((int)mWeatherIconWidth/2);
+                    if (mIsround){
+                        l = l + mRoundIconXIncrement;
+                    }
+                    canvas.drawBitmap(mWeatherIcon, l, (int)mWeatherIconYOffset, null);
+                }
+
+
+                //Draw Temperature
+                float temperatureTextWidth = mTemperaturePaint.measureText(mTemperatureText);
+                if (mAmbientMode){
+                    canvas.drawText(mTemperatureText, (watchWidth - temperatureTextWidth )/2 , mTemperatureYOffset, mTemperaturePaint);
+                }else{
+                    canvas.drawText(mTemperatureText, (watchWidth/2)+10 , mTemperatureYOffset, mTemperaturePaint);
+                }
+            }
         }
 
         /**
@@ -439,25 +758,76 @@ public class SunshineWatchfaceService extends CanvasWatchFaceService
             }
         }
 
+        /**
+         * Takes today's weather out of the forecast.  The strings are only built here, when the
+         * forecast changes, never while drawing.
+         */
+        private void updateTodayFromForecast() {
+            int today = mForecast.indexOfDay(System.currentTimeMillis());
+            if (today == -1) {
+                if (mForecast.size() == 0) {
+                    return;
+                }
+                today = 0;
+            }
+            boolean imperial = mForecast.isImperial();
+            Locale locale = Locale.getDefault();
+            if (mTemperatureFormatter == null || mTemperatureFormatter.isImperial() != imperial
+                    || !mTemperatureFormatter.getLocale().equals(locale)) {
+                mTemperatureFormatter =
+                        new TemperatureFormatter(locale, imperial, TemperatureFormatter.DEGREE);
+            }
+            mWeatherId = mForecast.getWeatherId(today);
+            mMaxTemp = mTemperatureFormatter.format(mForecast.getHigh(today));
+            mMinTemp = mTemperatureFormatter.format(mForecast.getLow(today));
+            Log.d("SunshineWatchfaceSvc", "onDataChanged(): " + mForecast.size() + " days, weatherId: "
+                    + mWeatherId + " high: " + mMaxTemp + " low: " + mMinTemp);
+        }
+
+        /**
+         * Takes the weather out of a DataItem from the phone and saves it for the next start.
+         *
+         * @return true if the weather changed
+         */
+        private boolean applyDataItem(DataItem dataItem) {
+            DataMap dataMap = DataMapItem.fromDataItem(dataItem).getDataMap();
+            String path = dataItem.getUri().getPath();
+            if (path.equals(ForecastPayload.PATH)){
+                byte[] payload = dataMap.getByteArray(ForecastPayload.KEY_PAYLOAD);
+                if (mForecast.decode(payload)) {
+                    updateTodayFromForecast();
+                    saveForecast(payload);
+                    return true;
+                }
+            } else if (path.equals("/today-weather-data") && mForecast.size() == 0){
+                // Only from a phone that doesn't send the whole forecast yet
+                mWeatherId = dataMap.getInt("weatherId");
+                mMaxTemp = dataMap.getString("high","");
+                mMinTemp = dataMap.getString("low","");
+                Log.d("SunshineWatchfaceSvc", "onDataChanged(): weatherId: " + mWeatherId + " high: " + mMaxTemp + "low: " + mMinTemp);
+                saveTodayWeather();
+                return true;
+            }
+            return false;
+        }
+
         /**
          * Handle updating Temperature information.
          */
         @Override
         public void onDataChanged(DataEventBuffer dataEventBuffer) {
 
+            boolean changed = false;
             for (DataEvent dataEvent : dataEventBuffer){
                 if (dataEvent.getType() == DataEvent.TYPE_CHANGED){
-                    DataMap dataMap = DataMapItem.fromDataItem(dataEvent.getDataItem()).getDataMap();
-                    String path =dataEvent.getDataItem().getUri().getPath();
-                    if (path.equals("/today-weather-data")){
-                        mWeatherId = dataMap.getInt("weatherId");
-                        mMaxTemp = dataMap.getString("high","");
-                        mMinTemp = dataMap.getString("low","");
-                        Log.d("SunshineWatchfaceSvc", "onDataChanged(): weatherId: " + mWeatherId + " high: " + mMaxTemp + "low: " + mMinTemp);
-                        invalidate();
-                    }
+                    changed |= applyDataItem(dataEvent.getDataItem());
                 }
             }
+            if (changed) {
+                onWeatherShown("data change");
+                onWeatherChanged();
+                invalidate();
+            }
         }
     }
 }
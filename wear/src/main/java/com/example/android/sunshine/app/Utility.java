@@ -1,10 +1,26 @@
 package com.example.android.sunshine.app;
 
+import com.example.android.sunshine.shared.WeatherConditions;
+
 /**
  * Created by soehler on 22/04/16.
  */
 public class Utility {
 
+        // Indexed by WeatherConditions category, -1 where there is no art
+        private static final int[] ART_RESOURCES = {
+                -1,
+                R.drawable.ic_storm,
+                R.drawable.ic_light_rain,
+                R.drawable.ic_rain,
+                R.drawable.ic_snow,
+                R.drawable.ic_fog,
+                R.drawable.ic_storm,
+                R.drawable.ic_clear,
+                R.drawable.ic_light_clouds,
+                R.drawable.ic_cloudy
+        };
+
         /**
          * Helper method to provide the art resource id according to the weather condition id returned
          * by the OpenWeatherMap call.
@@ -12,35 +28,31 @@ public class Utility {
          * @return resource id for the corresponding icon. -1 if no relation is found.
          */
         public static int getArtResourceForWeatherCondition(int weatherId) {
-            // Based on weather code data found at:
-            // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-            // cloned this method from Sunshine App
+            return ART_RESOURCES[WeatherConditions.getCategory(weatherId)];
+        }
 
-            if (weatherId >= 200 && weatherId <= 232) {
-                return R.drawable.ic_storm;
-            } else if (weatherId >= 300 && weatherId <= 321) {
-                return R.drawable.ic_light_rain;
-            } else if (weatherId >= 500 && weatherId <= 504) {
-                return R.drawable.ic_rain;
-            } else if (weatherId == 511) {
-                return R.drawable.ic_snow;
-            } else if (weatherId >= 520 && weatherId <= 531) {
-                return R.drawable.ic_rain;
-            } else if (weatherId >= 600 && weatherId <= 622) {
-                return R.drawable.ic_snow;
-            } else if (weatherId >= 701 && weatherId <= 761) {
-                return R.drawable.ic_fog;
-            } else if (weatherId == 761 || weatherId == 781) {
-                return R.drawable.ic_storm;
-            } else if (weatherId == 800) {
-                return R.drawable.ic_clear;
-            } else if (weatherId == 801) {
-                return R.drawable.ic_light_clouds;
-            } else if (weatherId >= 802 && weatherId <= 804) {
-                return R.drawable.ic_cloudy;
+        /**
+         * Writes a time as H:MM:SS, or H:MM, into chars without allocating, for the watch face to
+         * draw every second.  Same as String.format("%d:%02d:%02d") with ASCII digits.
+         *
+         * @param chars at least 8 long
+         * @return the number of chars written
+         */
+        static int formatTime(char[] chars, int hour, int minute, int second,
+                              boolean withSeconds) {
+            int length = 0;
+            if (hour >= 10) {
+                chars[length++] = (char) ('0' + hour / 10);
+            }
+            chars[length++] = (char) ('0' + hour % 10);
+            chars[length++] = ':';
+            chars[length++] = (char) ('0' + minute / 10);
+            chars[length++] = (char) ('0' + minute % 10);
+            if (withSeconds) {
+                chars[length++] = ':';
+                chars[length++] = (char) ('0' + second / 10);
+                chars[length++] = (char) ('0' + second % 10);
             }
-            return -1;
+            return length;
         }
 }
-
-
@@ -0,0 +1,84 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * The time the watch face draws every second, against the String.format calls it replaced.
+ */
+public class UtilityTest {
+
+    private static final int FRAMES = 1000000;
+
+    @Test
+    public void formatTime_matchesStringFormat() {
+        char[] chars = new char[8];
+        for (int hour = 0; hour < 24; hour++) {
+            for (int minute = 0; minute < 60; minute++) {
+                for (int second = 0; second < 60; second++) {
+                    int length = Utility.formatTime(chars, hour, minute, second, true);
+                    assertEquals(String.format(Locale.US, "%d:%02d:%02d", hour, minute, second),
+                            new String(chars, 0, length));
+                }
+                int length = Utility.formatTime(chars, hour, minute, 0, false);
+                assertEquals(String.format(Locale.US, "%d:%02d", hour, minute),
+                        new String(chars, 0, length));
+            }
+        }
+    }
+
+    /**
+     * A day's worth of interactive frames and then some, logged rather than asserted on for
+     * time, but formatting into the buffer must not allocate.
+     */
+    @Test
+    public void formatTime_benchmark() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long threadId = Thread.currentThread().getId();
+
+        char[] chars = new char[8];
+        int checksum = 0;
+        // Warm up both, so neither is measured while being compiled
+        for (int i = 0; i < FRAMES; i++) {
+            checksum += formatFrame(chars, i) + formatFrameWithString(i).length();
+        }
+
+        long allocated = allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            checksum += formatFrame(chars, i);
+        }
+        long bufferNanos = System.nanoTime() - start;
+        long bufferBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        allocated = allocations.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            checksum += formatFrameWithString(i).length();
+        }
+        long stringNanos = System.nanoTime() - start;
+        long stringBytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+
+        System.out.println(FRAMES + " frames: char buffer " + bufferNanos / FRAMES + "ns and "
+                + bufferBytes + " bytes, String.format " + stringNanos / FRAMES + "ns and "
+                + stringBytes + " bytes (" + checksum + ")");
+        // getThreadAllocatedBytes itself may allocate a little, but nothing per frame
+        assertTrue(bufferBytes + " bytes allocated", bufferBytes < 1024);
+    }
+
+    private static int formatFrame(char[] chars, int frame) {
+        return Utility.formatTime(chars, frame / 3600 % 24, frame / 60 % 60, frame % 60, true);
+    }
+
+    private static String formatFrameWithString(int frame) {
+        return String.format("%d:%02d:%02d", frame / 3600 % 24, frame / 60 % 60, frame % 60);
+    }
+}